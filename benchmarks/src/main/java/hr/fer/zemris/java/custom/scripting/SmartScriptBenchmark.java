@@ -0,0 +1,180 @@
+package hr.fer.zemris.java.custom.scripting;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import hr.fer.zemris.java.custom.scripting.exec.SmartScriptEngine;
+import hr.fer.zemris.java.custom.scripting.lexer.LexerState;
+import hr.fer.zemris.java.custom.scripting.lexer.SmartScriptLexer;
+import hr.fer.zemris.java.custom.scripting.lexer.Token;
+import hr.fer.zemris.java.custom.scripting.lexer.TokenType;
+import hr.fer.zemris.java.custom.scripting.nodes.DocumentNode;
+import hr.fer.zemris.java.custom.scripting.parser.SmartScriptParser;
+import hr.fer.zemris.java.webserver.NullOutputStream;
+import hr.fer.zemris.java.webserver.RequestContext;
+
+/**
+ * Benchmarks that measure {@link SmartScriptLexer} tokenization, {@link SmartScriptParser}
+ * tree building and {@link SmartScriptEngine} execution separately. They run over the
+ * shipped scripts and over synthetic templates of increasing size.
+ * Rendered output is discarded by {@link NullOutputStream}.
+ * Run with {@code -prof gc} to get bytes allocated per operation.
+ *
+ * @author Ante Gazibaric
+ * @version 1.0
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SmartScriptBenchmark {
+
+	/**
+	 * Prefix of synthetic scripts, it's followed by number of repeated blocks.
+	 */
+	private static final String SYNTHETIC = "synthetic";
+
+	/**
+	 * Name of benchmarked script. Shipped scripts are loaded from classpath,
+	 * synthetic ones are generated.
+	 */
+	@Param({"osnovni", "fibonacci", "fibonaccih", "zbrajanje", "brojPoziva", "synthetic10", "synthetic1000"})
+	public String script;
+
+	/**
+	 * Source of benchmarked script.
+	 */
+	private String document;
+	/**
+	 * Parsed script.
+	 */
+	private DocumentNode documentNode;
+
+	/**
+	 * Method loads or generates benchmarked script and parses it once.
+	 *
+	 * @throws IOException if script can't be loaded
+	 */
+	@Setup
+	public void setup() throws IOException {
+		if (script.startsWith(SYNTHETIC)) {
+			document = generate(Integer.parseInt(script.substring(SYNTHETIC.length())));
+		} else {
+			document = load("/" + script + ".smscr");
+		}
+		documentNode = new SmartScriptParser(document).getDocumentNode();
+	}
+
+	/**
+	 * Benchmark of tokenization. Lexer state is switched on tag borders the same way parser does it.
+	 *
+	 * @param bh blackhole that consumes tokens
+	 */
+	@Benchmark
+	public void lex(Blackhole bh) {
+		SmartScriptLexer lexer = new SmartScriptLexer(document);
+		while (true) {
+			Token token = lexer.nextToken();
+			bh.consume(token);
+			TokenType type = token.getType();
+			if (type == TokenType.EOF)
+				break;
+			if (type == TokenType.START_TAG) {
+				lexer.setState(LexerState.TAG);
+			} else if (type == TokenType.END_TAG) {
+				lexer.setState(LexerState.TEXT);
+			}
+		}
+	}
+
+	/**
+	 * Benchmark of tree building, including tokenization.
+	 *
+	 * @return parsed script
+	 */
+	@Benchmark
+	public DocumentNode parse() {
+		return new SmartScriptParser(document).getDocumentNode();
+	}
+
+	/**
+	 * Benchmark of rendering already parsed script.
+	 *
+	 * @return number of rendered bytes
+	 */
+	@Benchmark
+	public long execute() {
+		NullOutputStream os = new NullOutputStream();
+		Map<String, String> parameters = new HashMap<>();
+		parameters.put("a", "4");
+		parameters.put("b", "2");
+		RequestContext rc = new RequestContext(os, parameters, new HashMap<>(), null, new HashMap<>(), null);
+		new SmartScriptEngine(documentNode, rc).execute();
+		return os.getWritten();
+	}
+
+	/**
+	 * Method loads script from classpath.
+	 *
+	 * @param name         classpath name of script
+	 * @return             script source
+	 * @throws IOException if script can't be read
+	 */
+	private static String load(String name) throws IOException {
+		try (InputStream is = SmartScriptBenchmark.class.getResourceAsStream(name)) {
+			if (is == null)
+				throw new IOException("Script not found on classpath: " + name);
+			ByteArrayOutputStream bos = new ByteArrayOutputStream();
+			byte[] buffer = new byte[4096];
+			int read;
+			while ((read = is.read(buffer)) != -1) {
+				bos.write(buffer, 0, read);
+			}
+			return new String(bos.toByteArray(), StandardCharsets.UTF_8);
+		}
+	}
+
+	/**
+	 * Method generates HTML template that consists of given number of blocks.
+	 * Each block contains static text, echo tags with functions and operators and a loop.
+	 *
+	 * @param blocks number of blocks
+	 * @return       generated template
+	 */
+	private static String generate(int blocks) {
+		StringBuilder sb = new StringBuilder();
+		sb.append("{$= \"text/html\" @setMimeType $}<html><body>\n");
+		sb.append("{$= \"0\" \"count\" @tparamSet $}\n");
+		for (int i = 0; i < blocks; i++) {
+			sb.append("<h2>Block ").append(i).append("</h2>\n");
+			sb.append("<p>Lorem ipsum dolor sit amet, consectetur adipiscing elit, sed do eiusmod tempor.</p>\n");
+			sb.append("<p>a + b = {$= \"a\" 0 @paramGet \"b\" 0 @paramGet + $}</p>\n");
+			sb.append("{$= \"count\" \"0\" @tparamGet 1 + \"count\" @tparamSet $}\n");
+			sb.append("<ul>{$FOR i 1 5 1 $}<li>{$= i i * \"0.00\" @decfmt $}</li>{$END$}</ul>\n");
+		}
+		sb.append("<p>Blocks: {$= \"count\" \"0\" @tparamGet $}</p>\n</body></html>\n");
+		return sb.toString();
+	}
+
+}
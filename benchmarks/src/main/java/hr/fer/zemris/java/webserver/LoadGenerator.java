@@ -0,0 +1,718 @@
+package hr.fer.zemris.java.webserver;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.HdrHistogram.Histogram;
+
+/**
+ * Closed-loop load generator for end-to-end benchmarking of {@link SmartHttpServer}.
+ * It starts the server on loopback (or drives an already running one), opens configured number
+ * of connections and each of them sends requests one after another over URL mix taken from
+ * links on {@code /index2.html}, optionally waiting think time between requests.
+ * <p>
+ * Latencies are recorded in two histograms. Raw one contains only measured latencies.
+ * Corrected one additionally compensates coordinated omission: when response took longer than
+ * expected interval between requests, requests that a real client would have sent meanwhile are
+ * recorded with their linearly decreasing waiting times. Expected interval is think time, or mean
+ * latency measured during warmup if think time is zero.
+ * <p>
+ * In keep-alive mode, server may close idle connection without saying so. Request that finds
+ * reused connection closed before response starts is sent again once on new connection, and
+ * is reported as reconnect, not as error.
+ * <p>
+ * Run from project root so that server's relative paths resolve:
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar hr.fer.zemris.java.webserver.LoadGenerator -c 32 -d 30 -k
+ * </pre>
+ *
+ * @author Ante Gazibaric
+ * @version 1.0
+ *
+ */
+public class LoadGenerator {
+
+	/**
+	 * Highest latency in microseconds that histograms can record.
+	 */
+	private static final long MAX_LATENCY = TimeUnit.SECONDS.toMicros(60);
+	/**
+	 * Links used when they can't be read from index2.html.
+	 */
+	private static final String[] DEFAULT_URLS = {
+			"/index2.html", "/scripts/osnovni.smscr", "/scripts/brojPoziva.smscr",
+			"/scripts/fibonaccih.smscr", "/hello", "/cw", "/calc?a=1&b=2"
+	};
+	/**
+	 * Pattern of links in HTML.
+	 */
+	private static final Pattern LINK = Pattern.compile("href=\"https?://[^/\"]+(/[^\"]*)\"");
+
+	/**
+	 * Path to server's properties file.
+	 */
+	private String config = "./config/server.properties";
+	/**
+	 * Number of concurrent connections.
+	 */
+	private int connections = 16;
+	/**
+	 * Duration of measurement in seconds.
+	 */
+	private int duration = 10;
+	/**
+	 * Duration of warmup in seconds.
+	 */
+	private int warmup = 3;
+	/**
+	 * Think time between two requests on the same connection in milliseconds.
+	 */
+	private long thinkTime;
+	/**
+	 * Flag that shows if connections are kept alive between requests.
+	 */
+	private boolean keepAlive;
+	/**
+	 * Flag that shows if server is already running so it must not be started.
+	 */
+	private boolean external;
+	/**
+	 * Flag that shows if full corrected histogram is printed.
+	 */
+	private boolean printHistogram;
+	/**
+	 * Seed of random generators that pick URLs.
+	 */
+	private long seed = 42;
+	/**
+	 * Server's address.
+	 */
+	private String address;
+	/**
+	 * Server's port.
+	 */
+	private int port;
+	/**
+	 * Value of Host header.
+	 */
+	private String host;
+
+	/**
+	 * Main method. Run with {@code -help} to see accepted arguments.
+	 *
+	 * @param args command-line arguments
+	 * @throws Exception if load test fails
+	 */
+	public static void main(String[] args) throws Exception {
+		LoadGenerator generator = new LoadGenerator();
+		if (!generator.parseArguments(args)) {
+			printUsage();
+			return;
+		}
+		generator.run(System.out);
+		System.exit(0);
+	}
+
+	/**
+	 * Method parses command-line arguments.
+	 *
+	 * @param args command-line arguments
+	 * @return     {@code true} if arguments are valid, otherwise {@code false}
+	 */
+	private boolean parseArguments(String[] args) {
+		try {
+			for (int i = 0; i < args.length; i++) {
+				switch (args[i]) {
+					case "-config": config = args[++i]; break;
+					case "-c": connections = Integer.parseInt(args[++i]); break;
+					case "-d": duration = Integer.parseInt(args[++i]); break;
+					case "-w": warmup = Integer.parseInt(args[++i]); break;
+					case "-t": thinkTime = Long.parseLong(args[++i]); break;
+					case "-k": keepAlive = true; break;
+					case "-external": external = true; break;
+					case "-hist": printHistogram = true; break;
+					case "-seed": seed = Long.parseLong(args[++i]); break;
+					default: return false;
+				}
+			}
+		} catch (ArrayIndexOutOfBoundsException | NumberFormatException ex) {
+			return false;
+		}
+		return connections > 0 && duration > 0 && warmup >= 0 && thinkTime >= 0;
+	}
+
+	/**
+	 * Method prints accepted arguments.
+	 */
+	private static void printUsage() {
+		System.out.println("Arguments:");
+		System.out.println("  -config <path>  server properties (default ./config/server.properties)");
+		System.out.println("  -c <n>          concurrent connections (default 16)");
+		System.out.println("  -d <s>          measurement duration in seconds (default 10)");
+		System.out.println("  -w <s>          warmup duration in seconds (default 3)");
+		System.out.println("  -t <ms>         think time between requests (default 0)");
+		System.out.println("  -k              keep connections alive when server allows it");
+		System.out.println("  -external       don't start server, drive the one that is running");
+		System.out.println("  -hist           print full corrected latency histogram");
+		System.out.println("  -seed <n>       seed for URL selection (default 42)");
+	}
+
+	/**
+	 * Method runs load test and prints report.
+	 *
+	 * @param out        stream where report is printed
+	 * @throws Exception if load test fails
+	 */
+	private void run(PrintStream out) throws Exception {
+		Properties properties = new Properties();
+		try (InputStream is = Files.newInputStream(Paths.get(config))) {
+			properties.load(is);
+		}
+		address = properties.getProperty(ServerPropertiesKeys.ADDRESS);
+		port = Integer.parseInt(properties.getProperty(ServerPropertiesKeys.PORT));
+		host = properties.getProperty(ServerPropertiesKeys.DOMAIN);
+
+		SmartHttpServer server = null;
+		if (!external) {
+			server = new SmartHttpServer(config);
+			server.start();
+			awaitServer();
+		}
+
+		List<String> urls = loadUrls();
+		out.println("URL mix: " + urls);
+		out.printf("%d connections, %s, think time %d ms, warmup %d s, duration %d s%n",
+				connections, keepAlive ? "keep-alive" : "connection per request", thinkTime, warmup, duration);
+
+		long expectedInterval = TimeUnit.MILLISECONDS.toMicros(thinkTime);
+		if (warmup > 0) {
+			Result warmupResult = runPhase(urls, warmup, expectedInterval);
+			if (expectedInterval == 0) {
+				expectedInterval = (long) warmupResult.raw.getMean();
+			}
+		}
+		Result result = runPhase(urls, duration, expectedInterval);
+		report(out, result, expectedInterval);
+
+		if (server != null) {
+			server.stop();
+		}
+	}
+
+	/**
+	 * Method waits until server accepts connections.
+	 *
+	 * @throws InterruptedException if waiting is interrupted
+	 * @throws IOException          if server doesn't start in 10 seconds
+	 */
+	private void awaitServer() throws InterruptedException, IOException {
+		long deadline = System.currentTimeMillis() + 10_000;
+		while (true) {
+			try (Socket socket = new Socket()) {
+				socket.connect(new InetSocketAddress(address, port), 1000);
+				return;
+			} catch (IOException ex) {
+				if (System.currentTimeMillis() > deadline)
+					throw new IOException("Server didn't start on " + address + ":" + port, ex);
+				Thread.sleep(50);
+			}
+		}
+	}
+
+	/**
+	 * Method reads links from index2.html. If page can't be read, default links are returned.
+	 *
+	 * @return list of URL paths that are requested
+	 */
+	private List<String> loadUrls() {
+		Set<String> urls = new LinkedHashSet<>();
+		urls.add("/index2.html");
+		try (Connection connection = new Connection()) {
+			Response response = connection.get("/index2.html", false);
+			if (response.status == 200) {
+				Matcher m = LINK.matcher(new String(response.body, StandardCharsets.UTF_8));
+				while (m.find()) {
+					urls.add(m.group(1));
+				}
+			}
+		} catch (IOException ex) {
+			// Fall back to default links
+		}
+		if (urls.size() == 1) {
+			urls.clear();
+			for (String url : DEFAULT_URLS) {
+				urls.add(url);
+			}
+		}
+		return new ArrayList<>(urls);
+	}
+
+	/**
+	 * Method runs one phase of load test.
+	 *
+	 * @param urls             URL mix
+	 * @param seconds          duration of phase
+	 * @param expectedInterval expected interval between requests in microseconds
+	 * @return                 merged result of all connections
+	 * @throws InterruptedException if waiting for connections is interrupted
+	 */
+	private Result runPhase(List<String> urls, int seconds, long expectedInterval) throws InterruptedException {
+		long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+		CountDownLatch done = new CountDownLatch(connections);
+		List<Result> results = new ArrayList<>();
+		for (int i = 0; i < connections; i++) {
+			Result result = new Result();
+			results.add(result);
+			Random random = new Random(seed + i);
+			Thread thread = new Thread(() -> {
+				try {
+					drive(urls, random, end, expectedInterval, result);
+				} finally {
+					done.countDown();
+				}
+			}, "load-" + i);
+			thread.setDaemon(true);
+			thread.start();
+		}
+		done.await();
+
+		Result merged = new Result();
+		for (Result result : results) {
+			merged.add(result);
+		}
+		merged.elapsed = TimeUnit.SECONDS.toNanos(seconds);
+		return merged;
+	}
+
+	/**
+	 * Method drives one connection until given {@code end} time.
+	 *
+	 * @param urls             URL mix
+	 * @param random           random generator that picks URLs
+	 * @param end              time in nanoseconds when driving stops
+	 * @param expectedInterval expected interval between requests in microseconds
+	 * @param result           result where measurements are stored
+	 */
+	private void drive(List<String> urls, Random random, long end, long expectedInterval, Result result) {
+		Connection connection = null;
+		while (System.nanoTime() < end) {
+			String url = urls.get(random.nextInt(urls.size()));
+			long start = System.nanoTime();
+			try {
+				if (connection == null) {
+					connection = new Connection();
+					result.connects++;
+				}
+				Response response;
+				try {
+					response = connection.get(url, keepAlive);
+				} catch (StaleConnectionException ex) {
+					connection.close();
+					connection = new Connection();
+					result.connects++;
+					result.reconnects++;
+					response = connection.get(url, keepAlive);
+				}
+				long latency = (System.nanoTime() - start) / 1000;
+				result.record(Math.min(latency, MAX_LATENCY), expectedInterval);
+				result.bytes += response.body.length;
+				result.statuses.merge(response.status, 1L, Long::sum);
+				if (!keepAlive || !response.reusable) {
+					connection.close();
+					connection = null;
+				}
+			} catch (IOException ex) {
+				result.errors++;
+				if (connection != null) {
+					connection.close();
+					connection = null;
+				}
+			}
+			if (thinkTime > 0) {
+				try {
+					Thread.sleep(thinkTime);
+				} catch (InterruptedException ex) {
+					break;
+				}
+			}
+		}
+		if (connection != null) {
+			connection.close();
+		}
+	}
+
+	/**
+	 * Method prints report of given {@code result}.
+	 *
+	 * @param out              stream where report is printed
+	 * @param result           measured result
+	 * @param expectedInterval expected interval used for correction in microseconds
+	 */
+	private void report(PrintStream out, Result result, long expectedInterval) {
+		double seconds = result.elapsed / 1e9;
+		long requests = result.raw.getTotalCount();
+		out.println();
+		out.printf("Requests:    %d (%.1f req/s)%n", requests, requests / seconds);
+		out.printf("Transfer:    %.2f MB/s of response bodies%n", result.bytes / seconds / 1024 / 1024);
+		out.printf("Connections: %d opened, %d reconnects after server closed kept-alive connection%n",
+				result.connects, result.reconnects);
+		out.printf("Errors:      %d I/O errors, statuses %s%n", result.errors, result.statuses);
+		out.println();
+		out.printf("Latency (us)      %10s %10s%n", "raw", "corrected");
+		out.printf("  mean            %10.0f %10.0f%n", result.raw.getMean(), result.corrected.getMean());
+		for (double percentile : new double[] {50, 90, 99, 99.9, 99.99}) {
+			out.printf("  p%-14s %10d %10d%n", percentile, result.raw.getValueAtPercentile(percentile),
+					result.corrected.getValueAtPercentile(percentile));
+		}
+		out.printf("  max             %10d %10d%n", result.raw.getMaxValue(), result.corrected.getMaxValue());
+		out.printf("Correction uses expected interval of %d us%n", expectedInterval);
+
+		if (printHistogram) {
+			out.println();
+			out.println("Corrected latency distribution (ms):");
+			result.corrected.outputPercentileDistribution(out, 1000.0);
+		}
+	}
+
+	/**
+	 * Class represents measurements of one or more connections.
+	 *
+	 * @author Ante Gazibaric
+	 * @version 1.0
+	 *
+	 */
+	private static class Result {
+
+		/**
+		 * Histogram of measured latencies in microseconds.
+		 */
+		Histogram raw = new Histogram(MAX_LATENCY, 3);
+		/**
+		 * Histogram of latencies corrected for coordinated omission.
+		 */
+		Histogram corrected = new Histogram(MAX_LATENCY, 3);
+		/**
+		 * Number of received body bytes.
+		 */
+		long bytes;
+		/**
+		 * Number of opened connections.
+		 */
+		long connects;
+		/**
+		 * Number of requests sent again because reused connection was closed by server.
+		 */
+		long reconnects;
+		/**
+		 * Number of requests that failed with I/O error.
+		 */
+		long errors;
+		/**
+		 * Number of responses per status code.
+		 */
+		Map<Integer, Long> statuses = new TreeMap<>();
+		/**
+		 * Duration of measurement in nanoseconds.
+		 */
+		long elapsed;
+
+		/**
+		 * Method records one latency.
+		 *
+		 * @param latency          latency in microseconds
+		 * @param expectedInterval expected interval between requests in microseconds
+		 */
+		void record(long latency, long expectedInterval) {
+			raw.recordValue(latency);
+			if (expectedInterval > 0) {
+				corrected.recordValueWithExpectedInterval(latency, expectedInterval);
+			} else {
+				corrected.recordValue(latency);
+			}
+		}
+
+		/**
+		 * Method adds given {@code other} result to this one.
+		 *
+		 * @param other result that is added
+		 */
+		void add(Result other) {
+			raw.add(other.raw);
+			corrected.add(other.corrected);
+			bytes += other.bytes;
+			connects += other.connects;
+			reconnects += other.reconnects;
+			errors += other.errors;
+			other.statuses.forEach((status, count) -> statuses.merge(status, count, Long::sum));
+		}
+
+	}
+
+	/**
+	 * Class represents response read from server.
+	 *
+	 * @author Ante Gazibaric
+	 * @version 1.0
+	 *
+	 */
+	private static class Response {
+
+		/**
+		 * Status code.
+		 */
+		int status;
+		/**
+		 * Response body.
+		 */
+		byte[] body;
+		/**
+		 * Flag that shows if connection can be used for next request.
+		 */
+		boolean reusable;
+
+	}
+
+	/**
+	 * Exception thrown when reused connection turns out to be closed by server
+	 * before response to the request started.
+	 *
+	 * @author Ante Gazibaric
+	 * @version 1.0
+	 *
+	 */
+	private static class StaleConnectionException extends IOException {
+
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Constructor that creates new {@link StaleConnectionException} object.
+		 *
+		 * @param cause exception thrown while request was sent or response awaited
+		 */
+		StaleConnectionException(IOException cause) {
+			super("Reused connection was closed by server", cause);
+		}
+
+	}
+
+	/**
+	 * Class represents one client connection to the server.
+	 *
+	 * @author Ante Gazibaric
+	 * @version 1.0
+	 *
+	 */
+	private class Connection implements AutoCloseable {
+
+		/**
+		 * Connection's socket.
+		 */
+		private Socket socket;
+		/**
+		 * Socket's input stream.
+		 */
+		private InputStream is;
+		/**
+		 * Socket's output stream.
+		 */
+		private OutputStream os;
+		/**
+		 * Number of requests sent over connection.
+		 */
+		private int requests;
+
+		/**
+		 * Constructor that opens new connection to the server.
+		 *
+		 * @throws IOException if connection can't be opened
+		 */
+		Connection() throws IOException {
+			socket = new Socket();
+			socket.setTcpNoDelay(true);
+			socket.setSoTimeout((int) TimeUnit.MICROSECONDS.toMillis(MAX_LATENCY));
+			socket.connect(new InetSocketAddress(address, port));
+			is = new BufferedInputStream(socket.getInputStream());
+			os = socket.getOutputStream();
+		}
+
+		/**
+		 * Method sends GET request for given {@code url} and reads whole response.
+		 *
+		 * @param url          requested URL path
+		 * @param keepAlive    flag that shows if connection should be kept alive
+		 * @return             server's response
+		 * @throws StaleConnectionException if reused connection was closed before response started
+		 * @throws IOException if request or response fails
+		 */
+		Response get(String url, boolean keepAlive) throws IOException {
+			String request = "GET " + url + " HTTP/1.1\r\n"
+					+ "Host: " + host + ":" + port + "\r\n"
+					+ "Accept-Encoding: gzip\r\n"
+					+ "Connection: " + (keepAlive ? "keep-alive" : "close") + "\r\n\r\n";
+			boolean reused = requests++ > 0;
+			try {
+				os.write(request.getBytes(StandardCharsets.US_ASCII));
+				os.flush();
+				is.mark(1);
+				if (is.read() == -1)
+					throw new IOException("Connection closed by server");
+				is.reset();
+			} catch (IOException ex) {
+				if (reused)
+					throw new StaleConnectionException(ex);
+				throw ex;
+			}
+
+			Response response = new Response();
+			String statusLine = readLine();
+			String[] parts = statusLine.split(" ");
+			if (parts.length < 2)
+				throw new IOException("Invalid status line: " + statusLine);
+			response.status = Integer.parseInt(parts[1]);
+
+			long contentLength = -1;
+			boolean chunked = false;
+			boolean close = false;
+			String line;
+			while (!(line = readLine()).isEmpty()) {
+				int colon = line.indexOf(':');
+				if (colon < 0)
+					continue;
+				String name = line.substring(0, colon).trim();
+				String value = line.substring(colon + 1).trim();
+				if (name.equalsIgnoreCase("Content-Length")) {
+					contentLength = Long.parseLong(value);
+				} else if (name.equalsIgnoreCase("Transfer-Encoding")) {
+					chunked = value.equalsIgnoreCase("chunked");
+				} else if (name.equalsIgnoreCase("Connection")) {
+					close = value.equalsIgnoreCase("close");
+				}
+			}
+
+			if (response.status == 304 || response.status == 204) {
+				response.body = new byte[0];
+				response.reusable = !close;
+			} else if (chunked) {
+				response.body = readChunked();
+				response.reusable = !close;
+			} else if (contentLength >= 0) {
+				response.body = readFully((int) contentLength);
+				response.reusable = !close;
+			} else {
+				response.body = readToEnd();
+				response.reusable = false;
+			}
+			return response;
+		}
+
+		/**
+		 * Method reads one CRLF terminated line.
+		 *
+		 * @return             line without terminator
+		 * @throws IOException if stream ends before line is read
+		 */
+		private String readLine() throws IOException {
+			StringBuilder sb = new StringBuilder();
+			while (true) {
+				int b = is.read();
+				if (b == -1)
+					throw new IOException("Connection closed by server");
+				if (b == '\n')
+					break;
+				if (b != '\r')
+					sb.append((char) b);
+			}
+			return sb.toString();
+		}
+
+		/**
+		 * Method reads exactly given number of bytes.
+		 *
+		 * @param length       number of bytes
+		 * @return             read bytes
+		 * @throws IOException if stream ends before all bytes are read
+		 */
+		private byte[] readFully(int length) throws IOException {
+			byte[] data = new byte[length];
+			int offset = 0;
+			while (offset < length) {
+				int read = is.read(data, offset, length - offset);
+				if (read == -1)
+					throw new IOException("Connection closed by server");
+				offset += read;
+			}
+			return data;
+		}
+
+		/**
+		 * Method reads chunked body.
+		 *
+		 * @return             body without chunk framing
+		 * @throws IOException if body is invalid
+		 */
+		private byte[] readChunked() throws IOException {
+			ByteArrayOutputStream bos = new ByteArrayOutputStream();
+			while (true) {
+				String sizeLine = readLine();
+				int semicolon = sizeLine.indexOf(';');
+				int size = Integer.parseInt(semicolon < 0 ? sizeLine.trim() : sizeLine.substring(0, semicolon).trim(), 16);
+				if (size == 0) {
+					while (!readLine().isEmpty()) {
+						// Skip trailers
+					}
+					return bos.toByteArray();
+				}
+				bos.write(readFully(size));
+				readLine();
+			}
+		}
+
+		/**
+		 * Method reads body until server closes connection.
+		 *
+		 * @return             body
+		 * @throws IOException if reading fails
+		 */
+		private byte[] readToEnd() throws IOException {
+			ByteArrayOutputStream bos = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int read;
+			while ((read = is.read(buffer)) != -1) {
+				bos.write(buffer, 0, read);
+			}
+			return bos.toByteArray();
+		}
+
+		@Override
+		public void close() {
+			try {
+				socket.close();
+			} catch (IOException ex) {
+				// Nothing to do
+			}
+		}
+
+	}
+
+}
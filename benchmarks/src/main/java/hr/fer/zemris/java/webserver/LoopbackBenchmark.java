@@ -0,0 +1,84 @@
+package hr.fer.zemris.java.webserver;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the whole server path through {@link LoopbackConnector}: request parsing,
+ * sessions, dispatching, workers and scripts, without the network stack.
+ * Run from project root so that server's configuration is found.
+ *
+ * @author Ante Gazibaric
+ * @version 1.0
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LoopbackBenchmark {
+
+	/**
+	 * Pattern of session cookie in response header.
+	 */
+	private static final Pattern SID = Pattern.compile("Set-Cookie: sid=\"([A-Z]+)\"");
+
+	/**
+	 * Requested URL path.
+	 */
+	@Param({"/index.html", "/fruits.png", "/scripts/osnovni.smscr", "/scripts/fibonaccih.smscr",
+		"/hello?name=john", "/calc?a=11&b=22", "/index2.html", "/ext/EchoParams?a=1&b=2"})
+	public String url;
+
+	/**
+	 * Connector to the server.
+	 */
+	private LoopbackConnector connector;
+	/**
+	 * Raw request that carries session cookie.
+	 */
+	private byte[] request;
+
+	/**
+	 * Method creates server and opens session that is reused by all requests.
+	 */
+	@Setup
+	public void setup() {
+		connector = new LoopbackConnector(new SmartHttpServer("./config/server.properties"));
+		LoopbackConnector.ResponseBuffer response = connector.get("/index.html");
+		Matcher m = SID.matcher(new String(response.array(), 0, response.size(), StandardCharsets.US_ASCII));
+		if (!m.find())
+			throw new IllegalStateException("Server didn't open session");
+		request = ("GET " + url + " HTTP/1.1\r\n" +
+				"Host: localhost\r\n" +
+				"Cookie: sid=\"" + m.group(1) + "\"\r\n" +
+				"\r\n").getBytes(StandardCharsets.US_ASCII);
+	}
+
+	/**
+	 * Benchmark of one request and response.
+	 *
+	 * @return size of response
+	 */
+	@Benchmark
+	public int exchange() {
+		return connector.exchange(request).size();
+	}
+
+}
@@ -0,0 +1,39 @@
+package hr.fer.zemris.java.webserver;
+
+import java.io.OutputStream;
+
+/**
+ * Output stream that discards all written data.
+ * Used by benchmarks so that measured code doesn't pay for real I/O.
+ *
+ * @author Ante Gazibaric
+ * @version 1.0
+ *
+ */
+public class NullOutputStream extends OutputStream {
+
+	/**
+	 * Number of bytes written to this stream.
+	 */
+	private long written;
+
+	@Override
+	public void write(int b) {
+		written++;
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) {
+		written += len;
+	}
+
+	/**
+	 * Method returns number of bytes written to this stream.
+	 *
+	 * @return number of bytes written to this stream
+	 */
+	public long getWritten() {
+		return written;
+	}
+
+}
@@ -0,0 +1,239 @@
+package hr.fer.zemris.java.webserver;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import hr.fer.zemris.java.webserver.RequestContext.RCCookie;
+
+/**
+ * Benchmarks of the HTTP request path of {@link SmartHttpServer}: request line and
+ * header parsing, session lookup, query parsing, mime resolution and header generation.
+ * Run with {@code -prof gc} to get allocation rate next to the throughput.
+ *
+ * @author Ante Gazibaric
+ * @version 1.0
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RequestPathBenchmark {
+
+	/**
+	 * Request sent by a browser that follows a link from index2.html.
+	 */
+	private static final byte[] REQUEST = (
+			"GET /scripts/zbrajanje.smscr?a=3&b=7 HTTP/1.1\r\n" +
+			"Host: www.localhost.com:5721\r\n" +
+			"User-Agent: Mozilla/5.0 (X11; Linux x86_64; rv:60.0) Gecko/20100101 Firefox/60.0\r\n" +
+			"Accept: text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8\r\n" +
+			"Accept-Language: en-US,en;q=0.5\r\n" +
+			"Accept-Encoding: gzip, deflate\r\n" +
+			"Referer: http://www.localhost.com:5721/index2.html\r\n" +
+			"Connection: keep-alive\r\n" +
+			"\r\n").getBytes(StandardCharsets.US_ASCII);
+	/**
+	 * Query string of the request.
+	 */
+	private static final String QUERY = "name1=value1&name2=value2&name3=value3";
+
+	/**
+	 * Parsed request lines.
+	 */
+	private List<String> request;
+	/**
+	 * Request lines that carry cookie of an existing session.
+	 */
+	private List<String> requestWithSession;
+	/**
+	 * Session store used for session lookups.
+	 */
+	private SessionStore sessions;
+	/**
+	 * Mime types as configured in mime.properties.
+	 */
+	private Map<String, String> mimeTypes = new LinkedHashMap<>();
+	/**
+	 * Pool of request buffers.
+	 */
+	private BufferPool bufferPool = new BufferPool(1 << 24, false, new ServerMetrics());
+	/**
+	 * Channel that returns whole request in one read, like socket does.
+	 */
+	private RequestChannel requestChannel = new RequestChannel();
+
+	/**
+	 * Method prepares benchmark state.
+	 *
+	 * @throws IOException if request can't be parsed
+	 */
+	@Setup
+	public void setup() throws IOException {
+		mimeTypes.put("html", "text/html");
+		mimeTypes.put("htm", "text/html");
+		mimeTypes.put("txt", "text/plain");
+		mimeTypes.put("gif", "image/gif");
+		mimeTypes.put("png", "image/png");
+		mimeTypes.put("jpg", "image/jpg");
+
+		request = RequestParser.readRequest(new ByteArrayInputStream(REQUEST));
+		sessions = new SessionStore(600);
+		List<RCCookie> cookies = new ArrayList<>();
+		sessions.checkSession(request, "www.localhost.com", cookies);
+		requestWithSession = new ArrayList<>(request);
+		requestWithSession.add("Cookie: sid=\"" + cookies.get(0).getValue() + "\"");
+	}
+
+	/**
+	 * Benchmark of reading raw request bytes up to the empty line.
+	 *
+	 * @return raw request bytes
+	 * @throws IOException never
+	 */
+	@Benchmark
+	public byte[] getRequestByteArray() throws IOException {
+		return RequestParser.getRequestByteArray(new ByteArrayInputStream(REQUEST));
+	}
+
+	/**
+	 * Benchmark of reading request and splitting it into header lines.
+	 *
+	 * @return request lines
+	 * @throws IOException never
+	 */
+	@Benchmark
+	public List<String> readRequest() throws IOException {
+		return RequestParser.readRequest(new ByteArrayInputStream(REQUEST));
+	}
+
+	/**
+	 * Benchmark of reading request from channel into pooled direct buffer
+	 * and splitting it into header lines, as server does.
+	 *
+	 * @return request lines
+	 * @throws IOException never
+	 */
+	@Benchmark
+	public List<String> readRequestChannel() throws IOException {
+		requestChannel.position = 0;
+		BufferPool.PooledBuffer buffer = bufferPool.acquire(16 * 1024);
+		try {
+			return RequestParser.readRequest(requestChannel, buffer.buffer());
+		} finally {
+			buffer.release();
+		}
+	}
+
+	/**
+	 * Benchmark of host header lookup.
+	 *
+	 * @return requested host
+	 */
+	@Benchmark
+	public String parseHost() {
+		return RequestParser.parseHost(request, "www.localhost.com");
+	}
+
+	/**
+	 * Benchmark of session lookup for a request that carries valid session cookie.
+	 *
+	 * @return persistent parameters of the session
+	 */
+	@Benchmark
+	public Map<String, String> checkExistingSession() {
+		return sessions.checkSession(requestWithSession, "www.localhost.com", new ArrayList<>());
+	}
+
+	/**
+	 * Benchmark of query string parsing.
+	 *
+	 * @return parsed parameters
+	 */
+	@Benchmark
+	public Map<String, String> parseParameters() {
+		Map<String, String> params = new HashMap<>();
+		RequestParser.parseParameters(QUERY, params);
+		return params;
+	}
+
+	/**
+	 * Benchmark of mime type resolution.
+	 *
+	 * @return mime type of requested file
+	 */
+	@Benchmark
+	public String resolveMimeType() {
+		return RequestParser.resolveMimeType("/fruits.png", mimeTypes);
+	}
+
+	/**
+	 * Benchmark of response header generation with a session cookie.
+	 *
+	 * @return request context whose header has been written
+	 * @throws IOException never
+	 */
+	@Benchmark
+	public RequestContext generateHeader() throws IOException {
+		List<RCCookie> cookies = new ArrayList<>();
+		cookies.add(new RCCookie("sid", "ABCDEFGHIJKLMNOPQRST", null, "www.localhost.com", "/"));
+		RequestContext rc = new RequestContext(new NullOutputStream(), null, null, cookies);
+		rc.setMimeType("text/html");
+		rc.write(new byte[0]);
+		return rc;
+	}
+
+	/**
+	 * Channel that returns {@link #REQUEST}.
+	 */
+	private static class RequestChannel implements ReadableByteChannel {
+
+		/**
+		 * Position of next byte of request.
+		 */
+		private int position;
+
+		@Override
+		public int read(ByteBuffer dst) {
+			if (position == REQUEST.length)
+				return -1;
+			int length = Math.min(dst.remaining(), REQUEST.length - position);
+			dst.put(REQUEST, position, length);
+			position += length;
+			return length;
+		}
+
+		@Override
+		public boolean isOpen() {
+			return true;
+		}
+
+		@Override
+		public void close() {
+		}
+
+	}
+
+}
@@ -0,0 +1,112 @@
+package hr.fer.zemris.java.custom.scripting.exec;
+
+/**
+ * Limits of resources that one execution of smart script can use: number of
+ * loop iterations, number of bytes written to the context and wall time.
+ * Limit of {@code 0} means that resource isn't limited.
+ * 
+ * @author Ante Gazibaric
+ * @version 1.0
+ *
+ */
+public class ScriptBudget {
+
+	/**
+	 * Budget without limits.
+	 */
+	public static final ScriptBudget UNLIMITED = new ScriptBudget(0, 0, 0);
+
+	/**
+	 * Maximum number of loop iterations.
+	 */
+	private long maxIterations;
+	/**
+	 * Maximum number of bytes written to the context.
+	 */
+	private long maxOutput;
+	/**
+	 * Maximum wall time in milliseconds.
+	 */
+	private long maxTime;
+
+	/**
+	 * Constructor that creates new {@link ScriptBudget} object.
+	 * 
+	 * @param maxIterations {@link #maxIterations}
+	 * @param maxOutput     {@link #maxOutput}
+	 * @param maxTime       {@link #maxTime}
+	 */
+	public ScriptBudget(long maxIterations, long maxOutput, long maxTime) {
+		if (maxIterations < 0 || maxOutput < 0 || maxTime < 0)
+			throw new IllegalArgumentException("Budget limits must not be negative");
+		this.maxIterations = maxIterations;
+		this.maxOutput = maxOutput;
+		this.maxTime = maxTime;
+	}
+
+	/**
+	 * Method returns budget whose limits listed in given specification replace
+	 * limits of this budget. Specification is comma separated list of
+	 * {@code name=value} pairs, for example {@code maxIterations=1000, maxTime=500}.
+	 * 
+	 * @param specification list of limits
+	 * @return              new budget
+	 * @throws IllegalArgumentException if specification is invalid
+	 */
+	public ScriptBudget withLimits(String specification) {
+		long maxIterations = this.maxIterations;
+		long maxOutput = this.maxOutput;
+		long maxTime = this.maxTime;
+		for (String limit : specification.split(",")) {
+			if (limit.trim().isEmpty())
+				continue;
+			int equals = limit.indexOf('=');
+			if (equals < 0)
+				throw new IllegalArgumentException("Invalid budget limit: " + limit.trim());
+			String name = limit.substring(0, equals).trim();
+			long value = Long.parseLong(limit.substring(equals + 1).trim());
+			switch (name) {
+			case "maxIterations":
+				maxIterations = value;
+				break;
+			case "maxOutput":
+				maxOutput = value;
+				break;
+			case "maxTime":
+				maxTime = value;
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown budget limit: " + name);
+			}
+		}
+		return new ScriptBudget(maxIterations, maxOutput, maxTime);
+	}
+
+	/**
+	 * Method returns maximum number of loop iterations.
+	 * 
+	 * @return maximum number of loop iterations, {@code 0} if it isn't limited
+	 */
+	public long getMaxIterations() {
+		return maxIterations;
+	}
+
+	/**
+	 * Method returns maximum number of bytes written to the context.
+	 * 
+	 * @return maximum number of bytes, {@code 0} if it isn't limited
+	 */
+	public long getMaxOutput() {
+		return maxOutput;
+	}
+
+	/**
+	 * Method returns maximum wall time.
+	 * 
+	 * @return maximum wall time in milliseconds, {@code 0} if it isn't limited
+	 */
+	public long getMaxTime() {
+		return maxTime;
+	}
+
+}
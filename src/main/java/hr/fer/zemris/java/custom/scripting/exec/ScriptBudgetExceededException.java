@@ -0,0 +1,24 @@
+package hr.fer.zemris.java.custom.scripting.exec;
+
+/**
+ * Exception thrown when execution of smart script exceeds its {@link ScriptBudget}.
+ * 
+ * @author Ante Gazibaric
+ * @version 1.0
+ *
+ */
+public class ScriptBudgetExceededException extends RuntimeException {
+	
+	/** Default serial key */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Constructor for creating new {@code ScriptBudgetExceededException} object.
+	 * 
+	 * @param message message that describes which limit was exceeded
+	 */
+	public ScriptBudgetExceededException(String message) {
+		super(message);
+	}
+
+}
@@ -1,8 +1,11 @@
 package hr.fer.zemris.java.custom.scripting.exec;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
 import java.text.DecimalFormat;
 import java.util.Stack;
+import java.util.concurrent.TimeUnit;
 
 import hr.fer.zemris.java.custom.scripting.elems.Element;
 import hr.fer.zemris.java.custom.scripting.elems.ElementConstantDouble;
@@ -16,10 +19,13 @@ import hr.fer.zemris.java.custom.scripting.nodes.EchoNode;
 import hr.fer.zemris.java.custom.scripting.nodes.ForLoopNode;
 import hr.fer.zemris.java.custom.scripting.nodes.INodeVisitor;
 import hr.fer.zemris.java.custom.scripting.nodes.TextNode;
+import hr.fer.zemris.java.webserver.RequestCancelledException;
 import hr.fer.zemris.java.webserver.RequestContext;
 
 /**
  * SmartScriptEngine is class that can interpret and execute smart scripts.
+ * Execution is limited by {@link ScriptBudget}, when any of its limits is
+ * exceeded execution stops with {@link ScriptBudgetExceededException}.
  * 
  * @author Ante Gazibaric
  * @version 1.0
@@ -39,6 +45,26 @@ public class SmartScriptEngine {
 	 * Multistack object.
 	 */
 	private ObjectMultistack multistack = new ObjectMultistack();
+	/**
+	 * Limits of resources that execution can use.
+	 */
+	private ScriptBudget budget;
+	/**
+	 * Number of loop iterations done so far.
+	 */
+	private long iterations;
+	/**
+	 * Number of bytes written to the context so far.
+	 */
+	private long output;
+	/**
+	 * Time in nanoseconds when execution must end, {@code 0} if wall time isn't limited.
+	 */
+	private long deadline;
+	/**
+	 * Mask of iteration counter that determines how often wall time is checked in loops.
+	 */
+	private static final long TIME_CHECK_MASK = 0xFF;
 	/**
 	 * Node visitor object used for visiting all nodes 
 	 * and performing correct actions.
@@ -48,8 +74,11 @@ public class SmartScriptEngine {
 		@Override
 		public void visitTextNode(TextNode node) {
 			try {
-				requestContext.write(node.getText());
+				byte[] text = node.getEncodedText(requestContext.getCharset());
+				checkOutput(text.length);
+				requestContext.write(ByteBuffer.wrap(text));
 			} catch (IOException e) {
+				throw new UncheckedIOException(e);
 			}
 		}
 
@@ -62,7 +91,9 @@ public class SmartScriptEngine {
 			String endValue = node.getEndExpression().asText();
 			String stepValue = node.getStepExpression().asText();
 			while (multistack.peek(varName).numComare(endValue) <= 0) {
+				checkIteration();
 				for (int i = 0, n = node.numberOfChildren(); i < n; i++) {
+					checkCancelled();
 					node.getChild(i).accept(this);
 				}
 				multistack.peek(varName).add(stepValue);
@@ -182,9 +213,11 @@ public class SmartScriptEngine {
 			Object[] elements = temporaryStack.toArray();
 			for (int i = 0; i < elements.length; i++) {
 				try {
-					requestContext.write(elements[i].toString());
+					byte[] data = elements[i].toString().getBytes(requestContext.getCharset());
+					checkOutput(data.length);
+					requestContext.write(data);
 				} catch (IOException ex) {
-					ex.printStackTrace();
+					throw new UncheckedIOException(ex);
 				}
 			}
 		}
@@ -203,9 +236,62 @@ public class SmartScriptEngine {
 		@Override
 		public void visitDocumentNode(DocumentNode node) {
 			for (int i = 0, n = node.numberOfChildren(); i < n; i++) {
+				checkCancelled();
+				checkTime();
 				node.getChild(i).accept(this);
 			}
 		}
+		
+		/**
+		 * Method counts loop iteration and stops execution if it exceeds number
+		 * of iterations allowed by budget. Every few iterations it checks wall time too.
+		 * 
+		 * @throws ScriptBudgetExceededException if budget is exceeded
+		 */
+		private void checkIteration() {
+			checkCancelled();
+			iterations++;
+			long maxIterations = budget.getMaxIterations();
+			if (maxIterations > 0 && iterations > maxIterations)
+				throw new ScriptBudgetExceededException("Script exceeded " + maxIterations + " loop iterations");
+			if ((iterations & TIME_CHECK_MASK) == 0) {
+				checkTime();
+			}
+		}
+		
+		/**
+		 * Method stops execution if its wall time exceeds time allowed by budget.
+		 * 
+		 * @throws ScriptBudgetExceededException if budget is exceeded
+		 */
+		private void checkTime() {
+			if (deadline != 0 && System.nanoTime() - deadline >= 0)
+				throw new ScriptBudgetExceededException("Script exceeded " + budget.getMaxTime() + " ms");
+		}
+		
+		/**
+		 * Method counts bytes that are about to be written and stops execution
+		 * before writing if output would exceed size allowed by budget.
+		 * 
+		 * @param length number of bytes that are about to be written
+		 * @throws ScriptBudgetExceededException if budget is exceeded
+		 */
+		private void checkOutput(int length) {
+			output += length;
+			long maxOutput = budget.getMaxOutput();
+			if (maxOutput > 0 && output > maxOutput)
+				throw new ScriptBudgetExceededException("Script exceeded " + maxOutput + " bytes of output");
+		}
+		
+		/**
+		 * Method stops execution if request has been cancelled, because its
+		 * deadline has passed or client has disconnected.
+		 * 
+		 * @throws RequestCancelledException if request has been cancelled
+		 */
+		private void checkCancelled() {
+			requestContext.getCancellationToken().throwIfCancelled();
+		}
 
 	};
 	
@@ -216,14 +302,33 @@ public class SmartScriptEngine {
 	 * @param requestContext {@link #requestContext}
 	 */
 	public SmartScriptEngine(DocumentNode documentNode, RequestContext requestContext) {
+		this(documentNode, requestContext, ScriptBudget.UNLIMITED);
+	}
+	
+	/**
+	 * Constructor that creates new {@link SmartScriptEngine} object
+	 * whose execution is limited by given budget.
+	 * 
+	 * @param documentNode   {@link #documentNode}
+	 * @param requestContext {@link #requestContext}
+	 * @param budget         {@link #budget}
+	 */
+	public SmartScriptEngine(DocumentNode documentNode, RequestContext requestContext, ScriptBudget budget) {
 		this.documentNode = documentNode;
 		this.requestContext = requestContext;
+		this.budget = budget;
 	}
 
 	/**
 	 * Method executes {@link SmartScriptEngine}.
+	 * 
+	 * @throws ScriptBudgetExceededException if execution exceeds its budget
 	 */
 	public void execute() {
+		iterations = 0;
+		output = 0;
+		deadline = budget.getMaxTime() > 0
+				? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(budget.getMaxTime()) : 0;
 		documentNode.accept(visitor);
 	}
 
@@ -1,5 +1,7 @@
 package hr.fer.zemris.java.custom.scripting.nodes;
 
+import java.nio.charset.Charset;
+
 /**
  * Class represents text node and its properties.
  * 
@@ -12,6 +14,10 @@ public class TextNode extends Node {
 	 * content of text node
 	 */
 	private String text;
+	/**
+	 * content of text node encoded with last used charset
+	 */
+	private volatile EncodedText encoded;
 	
 	/**
 	 * Constructor for creating new <code>TextNode</code>.
@@ -27,9 +33,56 @@ public class TextNode extends Node {
 		return text;
 	}
 	
+	/**
+	 * Method returns content of text node encoded with given charset.
+	 * Encoded content is cached, so node that is executed many times
+	 * is encoded only once.
+	 * 
+	 * @param charset charset used for encoding
+	 * @return        encoded content, must not be modified
+	 */
+	public byte[] getEncodedText(Charset charset) {
+		EncodedText encoded = this.encoded;
+		if (encoded == null || !encoded.charset.equals(charset)) {
+			encoded = new EncodedText(charset, text.getBytes(charset));
+			this.encoded = encoded;
+		}
+		return encoded.bytes;
+	}
+	
 	@Override
 	public void accept(INodeVisitor visitor) {
 		visitor.visitTextNode(this);
 	}
 	
+	/**
+	 * Class represents content of text node encoded with some charset.
+	 * 
+	 * @author Ante Gazibarić
+	 * @version 1.0
+	 */
+	private static class EncodedText {
+		
+		/**
+		 * charset used for encoding
+		 */
+		private Charset charset;
+		/**
+		 * encoded content
+		 */
+		private byte[] bytes;
+		
+		/**
+		 * Constructor for creating new <code>EncodedText</code>.
+		 * 
+		 * @param charset charset used for encoding
+		 * @param bytes   encoded content
+		 */
+		private EncodedText(Charset charset, byte[] bytes) {
+			this.charset = charset;
+			this.bytes = bytes;
+		}
+		
+	}
+	
 }
@@ -0,0 +1,227 @@
+package hr.fer.zemris.java.webserver;
+
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Controller that adapts number of threads in pool, and limit of pool's queue,
+ * to latency of requests. It uses gradient algorithm: time in which requests of recent
+ * window were served is compared to long term average. While they are about the same
+ * and requests wait in the queue, limit grows by square root of itself. When recent
+ * service time rises, which means that threads have started to compete for resources,
+ * limit shrinks in proportion to the rise, and so does the queue, so more requests
+ * are rejected. Limit is kept between configured floor and ceiling. Queue keeps
+ * its configured size while service time is tolerable, no matter how many
+ * threads pool has.
+ * <p>
+ * Limit is recalculated when window ends, by thread that records first latency
+ * after the end. Its decisions are reported in {@link ServerMetrics}, under
+ * the name of pool's admission control.
+ *
+ * @author Ante Gazibaric
+ * @version 1.0
+ *
+ */
+public class AdaptivePoolSizer {
+
+	/**
+	 * Suffix of metric with current limit, which is number of pool's threads.
+	 */
+	public static final String LIMIT = ".limit";
+	/**
+	 * Suffix of metric with service time of last window in microseconds.
+	 */
+	public static final String SHORT_LATENCY = ".shortLatencyMicros";
+	/**
+	 * Suffix of metric with long term service time in microseconds.
+	 */
+	public static final String LONG_LATENCY = ".longLatencyMicros";
+	/**
+	 * Suffix of metric with time requests of last window waited in the queue, in microseconds.
+	 */
+	public static final String QUEUE_LATENCY = ".queueLatencyMicros";
+	/**
+	 * Suffix of metric with number of times limit was raised.
+	 */
+	public static final String INCREASES = ".increases";
+	/**
+	 * Suffix of metric with number of times limit was lowered.
+	 */
+	public static final String DECREASES = ".decreases";
+
+	/**
+	 * Minimum number of requests in window needed to recalculate limit.
+	 */
+	private static final int MIN_SAMPLES = 10;
+	/**
+	 * Number of windows over which long term latency is averaged.
+	 */
+	private static final int LONG_WINDOWS = 20;
+	/**
+	 * Ratio of recent to long term service time that is tolerated before limit is lowered.
+	 */
+	private static final double TOLERANCE = 1.5;
+	/**
+	 * Part of new limit that is taken into account, smooths out the changes.
+	 */
+	private static final double SMOOTHING = 0.2;
+
+	/**
+	 * Admission control of controlled pool.
+	 */
+	private AdmissionControl admissionControl;
+	/**
+	 * Minimum number of threads.
+	 */
+	private int minThreads;
+	/**
+	 * Maximum number of threads.
+	 */
+	private int maxThreads;
+	/**
+	 * Length of window in nanoseconds.
+	 */
+	private long window;
+	/**
+	 * Metrics where decisions are reported.
+	 */
+	private ServerMetrics metrics;
+
+	/**
+	 * Current limit, {@code 0} until first window ends.
+	 */
+	private double limit;
+	/**
+	 * Long term service time in nanoseconds.
+	 */
+	private double longLatency;
+	/**
+	 * Service time of last window in nanoseconds.
+	 */
+	private double shortLatency;
+	/**
+	 * Time requests of last window waited in the queue, in nanoseconds.
+	 */
+	private double queueLatency;
+	/**
+	 * End of current window in nanoseconds.
+	 */
+	private long windowEnd;
+	/**
+	 * Sum of service times in current window.
+	 */
+	private long latencySum;
+	/**
+	 * Sum of times spent in the queue in current window.
+	 */
+	private long queueSum;
+	/**
+	 * Number of requests in current window.
+	 */
+	private int samples;
+	/**
+	 * Maximum number of busy threads seen in current window.
+	 */
+	private int maxBusy;
+
+	/**
+	 * Constructor that creates new {@link AdaptivePoolSizer} object.
+	 *
+	 * @param admissionControl {@link #admissionControl}
+	 * @param minThreads       {@link #minThreads}
+	 * @param maxThreads       {@link #maxThreads}
+	 * @param window           length of window in milliseconds
+	 * @param metrics          {@link #metrics}
+	 */
+	public AdaptivePoolSizer(AdmissionControl admissionControl, int minThreads, int maxThreads, long window,
+			ServerMetrics metrics) {
+		if (minThreads <= 0 || maxThreads < minThreads || window <= 0)
+			throw new IllegalArgumentException("Thread limits must be positive and window must be positive");
+		this.admissionControl = admissionControl;
+		this.minThreads = minThreads;
+		this.maxThreads = maxThreads;
+		this.window = TimeUnit.MILLISECONDS.toNanos(window);
+		this.metrics = metrics;
+		String name = admissionControl.getName();
+		metrics.registerGauge(name + LIMIT, () -> {
+			ThreadPoolExecutor executor = admissionControl.getExecutor();
+			return executor == null ? 0 : executor.getMaximumPoolSize();
+		});
+		metrics.registerGauge(name + SHORT_LATENCY, () -> (long) (shortLatency / 1000));
+		metrics.registerGauge(name + LONG_LATENCY, () -> (long) (longLatency / 1000));
+		metrics.registerGauge(name + QUEUE_LATENCY, () -> (long) (queueLatency / 1000));
+	}
+
+	/**
+	 * Method records latency of request served by controlled pool.
+	 *
+	 * @param queueTime   time in nanoseconds request waited in the queue
+	 * @param serviceTime time in nanoseconds in which request was served
+	 */
+	public synchronized void record(long queueTime, long serviceTime) {
+		ThreadPoolExecutor executor = admissionControl.getExecutor();
+		long now = System.nanoTime();
+		if (windowEnd == 0) {
+			windowEnd = now + window;
+		}
+		latencySum += serviceTime;
+		queueSum += queueTime;
+		samples++;
+		maxBusy = Math.max(maxBusy, executor.getActiveCount());
+		if (now - windowEnd < 0 || samples < MIN_SAMPLES)
+			return;
+
+		if (limit == 0) {
+			limit = executor.getMaximumPoolSize();
+		}
+		shortLatency = (double) latencySum / samples;
+		queueLatency = (double) queueSum / samples;
+		longLatency = longLatency == 0 ? shortLatency
+				: longLatency + (shortLatency - longLatency) / LONG_WINDOWS;
+		if (longLatency > 2 * shortLatency) {
+			// Latency dropped for good, so long term average follows it faster
+			longLatency = (longLatency + shortLatency) / 2;
+		}
+
+		double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * longLatency / shortLatency));
+		double newLimit = limit * gradient + Math.sqrt(limit);
+		if (newLimit > limit && (maxBusy < (int) limit || queueLatency < shortLatency / 10)) {
+			// Requests hardly wait for threads, so there is no reason to add them
+			newLimit = limit;
+		}
+		newLimit = limit * (1 - SMOOTHING) + newLimit * SMOOTHING;
+		limit = Math.max(minThreads, Math.min(maxThreads, newLimit));
+		apply(executor, (int) limit, gradient);
+
+		latencySum = 0;
+		queueSum = 0;
+		samples = 0;
+		maxBusy = 0;
+		windowEnd = now + window;
+	}
+
+	/**
+	 * Method sets number of pool's threads and limit of pool's queue, which
+	 * is configured maximum scaled by gradient, so it shrinks only when pool
+	 * is overloaded.
+	 *
+	 * @param executor controlled pool
+	 * @param threads  number of threads
+	 * @param gradient ratio of tolerated to recent service time, between 0.5 and 1
+	 */
+	private void apply(ThreadPoolExecutor executor, int threads, double gradient) {
+		int current = executor.getMaximumPoolSize();
+		if (threads > current) {
+			// Maximum size must never be below core size
+			executor.setMaximumPoolSize(threads);
+			executor.setCorePoolSize(threads);
+			metrics.increment(admissionControl.getName() + INCREASES);
+		} else if (threads < current) {
+			executor.setCorePoolSize(threads);
+			executor.setMaximumPoolSize(threads);
+			metrics.increment(admissionControl.getName() + DECREASES);
+		}
+		admissionControl.setQueueLimit((int) Math.ceil(admissionControl.getMaxQueue() * gradient));
+	}
+
+}
@@ -0,0 +1,270 @@
+package hr.fer.zemris.java.webserver;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Admission control in front of server's thread pool. Queue of connections that
+ * wait for worker thread is bounded, so connection that arrives when queue is full
+ * is rejected right away. Connection is also dropped when worker takes it from
+ * the queue if it waited longer than maximum queue time, or if CoDel
+ * (controlled delay) algorithm decides to drop it.
+ * <p>
+ * CoDel looks at time connections spend in the queue. Short bursts are allowed,
+ * but when waiting time stays above target for whole interval queue is considered
+ * standing, and connections are dropped with increasing frequency until
+ * waiting time falls below target again. Dropped and rejected connections
+ * get {@code 503 Service Unavailable} response.
+ *
+ * @author Ante Gazibaric
+ * @version 1.0
+ *
+ */
+public class AdmissionControl {
+
+	/**
+	 * Suffix of metric with number of connections rejected because queue was full.
+	 */
+	public static final String REJECTED = ".rejected";
+	/**
+	 * Suffix of metric with number of connections dropped after waiting in the queue.
+	 */
+	public static final String DROPPED = ".dropped";
+	/**
+	 * Suffix of metric with number of connections that are waiting in the queue.
+	 */
+	public static final String QUEUE_DEPTH = ".queueDepth";
+
+	/**
+	 * Name under which queue is reported in metrics.
+	 */
+	private String name;
+	/**
+	 * Maximum number of connections waiting in the queue.
+	 */
+	private int maxQueue;
+	/**
+	 * Current limit of connections waiting in the queue, at most {@link #maxQueue}.
+	 */
+	private volatile int queueLimit;
+	/**
+	 * Maximum time in nanoseconds connection can wait in the queue.
+	 */
+	private long maxQueueTime;
+	/**
+	 * Target waiting time in nanoseconds.
+	 */
+	private long target;
+	/**
+	 * Interval in nanoseconds during which waiting time has to stay above target
+	 * before connections are dropped.
+	 */
+	private long interval;
+	/**
+	 * Metrics where rejected and dropped connections are reported.
+	 */
+	private ServerMetrics metrics;
+	/**
+	 * Executor whose queue is controlled.
+	 */
+	private ThreadPoolExecutor executor;
+
+	/**
+	 * Time when waiting time above target becomes standing queue, 0 if waiting time is below target.
+	 */
+	private long firstAboveTime;
+	/**
+	 * Flag that shows if connections are being dropped.
+	 */
+	private boolean dropping;
+	/**
+	 * Time of next drop while dropping.
+	 */
+	private long dropNext;
+	/**
+	 * Number of drops since dropping started.
+	 */
+	private int dropCount;
+
+	/**
+	 * Constructor that creates new {@link AdmissionControl} object.
+	 *
+	 * @param name         {@link #name}
+	 * @param maxQueue     {@link #maxQueue}
+	 * @param maxQueueTime maximum time in milliseconds connection can wait in the queue
+	 * @param target       target waiting time in milliseconds
+	 * @param interval     interval in milliseconds during which waiting time has to stay
+	 *                     above target before connections are dropped
+	 * @param metrics      {@link #metrics}
+	 */
+	public AdmissionControl(String name, int maxQueue, long maxQueueTime, long target, long interval,
+			ServerMetrics metrics) {
+		if (maxQueue <= 0 || maxQueueTime <= 0 || target <= 0 || interval <= 0)
+			throw new IllegalArgumentException("Admission limits must be positive");
+		this.name = name;
+		this.maxQueue = maxQueue;
+		this.queueLimit = maxQueue;
+		this.maxQueueTime = TimeUnit.MILLISECONDS.toNanos(maxQueueTime);
+		this.target = TimeUnit.MILLISECONDS.toNanos(target);
+		this.interval = TimeUnit.MILLISECONDS.toNanos(interval);
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Method creates thread pool with given number of threads whose queue
+	 * is bounded by this admission control. Task submitted to full pool
+	 * is rejected with {@link RejectedExecutionException}.
+	 *
+	 * @param threads number of threads
+	 * @return        thread pool
+	 */
+	public ThreadPoolExecutor newThreadPool(int threads) {
+		executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+				new LinkedBlockingQueue<>(maxQueue));
+		metrics.registerGauge(name + QUEUE_DEPTH, () -> executor.getQueue().size());
+		return executor;
+	}
+
+	/**
+	 * Method returns thread pool created by {@link #newThreadPool(int)}.
+	 *
+	 * @return thread pool or {@code null} if it hasn't been created
+	 */
+	public ThreadPoolExecutor getExecutor() {
+		return executor;
+	}
+
+	/**
+	 * Method submits given task to thread pool, unless queue has reached its limit.
+	 *
+	 * @param task task that is submitted
+	 * @throws RejectedExecutionException if queue has reached its limit
+	 */
+	public void execute(Runnable task) {
+		if (executor.getQueue().size() >= queueLimit)
+			throw new RejectedExecutionException("Queue of " + name + " is full");
+		executor.execute(task);
+	}
+
+	/**
+	 * Method returns name under which queue is reported in metrics.
+	 *
+	 * @return name of queue
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Method returns maximum number of connections waiting in the queue.
+	 *
+	 * @return maximum number of connections waiting in the queue
+	 */
+	public int getMaxQueue() {
+		return maxQueue;
+	}
+
+	/**
+	 * Method sets limit of connections waiting in the queue, which can
+	 * be lowered below configured maximum while server is overloaded.
+	 *
+	 * @param queueLimit limit between 1 and {@link #getMaxQueue()}
+	 */
+	public void setQueueLimit(int queueLimit) {
+		this.queueLimit = Math.max(1, Math.min(queueLimit, maxQueue));
+	}
+
+	/**
+	 * Method records that connection was rejected because queue was full.
+	 */
+	public void rejected() {
+		metrics.increment(name + REJECTED);
+	}
+
+	/**
+	 * Method decides if connection that has been taken from the queue is served.
+	 *
+	 * @param enqueued time in nanoseconds when connection was put in the queue
+	 * @return         {@code true} if connection is served, {@code false} if it's dropped
+	 */
+	public boolean admit(long enqueued) {
+		long now = System.nanoTime();
+		long waited = now - enqueued;
+		// Connection that leaves queue empty behind it doesn't show standing queue
+		boolean drained = executor.getQueue().isEmpty();
+		boolean drop;
+		synchronized (this) {
+			drop = shouldDrop(waited, drained, now) || waited > maxQueueTime;
+		}
+		if (drop) {
+			metrics.increment(name + DROPPED);
+		}
+		return !drop;
+	}
+
+	/**
+	 * Method runs CoDel for connection that waited given time in the queue.
+	 *
+	 * @param waited  waiting time in nanoseconds
+	 * @param drained flag that shows if queue is empty after connection was taken from it
+	 * @param now     current time in nanoseconds
+	 * @return        {@code true} if connection should be dropped
+	 */
+	private boolean shouldDrop(long waited, boolean drained, long now) {
+		boolean standing = isStanding(waited, drained, now);
+		if (dropping) {
+			if (!standing) {
+				dropping = false;
+				return false;
+			}
+			if (now - dropNext >= 0) {
+				dropCount++;
+				dropNext = nextDrop(dropNext);
+				return true;
+			}
+			return false;
+		}
+		if (!standing)
+			return false;
+		dropping = true;
+		// Queue that comes back soon after dropping stopped continues with previous rate
+		dropCount = dropCount > 2 && now - dropNext < 16 * interval ? dropCount - 2 : 1;
+		dropNext = nextDrop(now);
+		return true;
+	}
+
+	/**
+	 * Method checks if waiting time has been above target for whole interval.
+	 * Queue that has been drained isn't standing, so time above target is
+	 * measured again from the next connection that waits too long.
+	 *
+	 * @param waited  waiting time in nanoseconds
+	 * @param drained flag that shows if queue is empty after connection was taken from it
+	 * @param now     current time in nanoseconds
+	 * @return        {@code true} if queue is standing
+	 */
+	private boolean isStanding(long waited, boolean drained, long now) {
+		if (waited < target || drained) {
+			firstAboveTime = 0;
+			return false;
+		}
+		if (firstAboveTime == 0) {
+			firstAboveTime = now + interval;
+			return false;
+		}
+		return now - firstAboveTime >= 0;
+	}
+
+	/**
+	 * Method returns time of next drop, which comes sooner the more drops there were.
+	 *
+	 * @param time time of current drop in nanoseconds
+	 * @return     time of next drop in nanoseconds
+	 */
+	private long nextDrop(long time) {
+		return time + (long) (interval / Math.sqrt(dropCount));
+	}
+
+}
@@ -0,0 +1,77 @@
+package hr.fer.zemris.java.webserver;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Class represents worker that processes request from client asynchronously.
+ * Worker returns as soon as it has started processing, so server's thread isn't
+ * held while worker waits for slow operations, and completes returned stage when
+ * response has been written to the context.
+ * <p>
+ * Context given to the worker buffers response body, so it can be written from
+ * any thread without blocking. Response is sent to the client when stage completes.
+ *
+ * @author Ante Gazibaric
+ * @version 1.0
+ *
+ */
+public interface AsyncWebWorker {
+
+	/**
+	 * Method starts processing request and uses context to write results
+	 * or to delegate processing job further.
+	 *
+	 * @param context context where it writes result of processed request
+	 * @return        stage that completes when request has been processed,
+	 *                or completes exceptionally if processing fails
+	 */
+	public CompletionStage<Void> processRequestAsync(RequestContext context);
+
+	/**
+	 * Method returns asynchronous worker that processes request with given
+	 * synchronous worker in the calling thread.
+	 *
+	 * @param worker synchronous worker
+	 * @return       asynchronous worker whose stage is already completed when it returns
+	 */
+	public static AsyncWebWorker of(IWebWorker worker) {
+		return new SyncWorkerAdapter(worker);
+	}
+
+	/**
+	 * Adapter of synchronous worker to {@link AsyncWebWorker}.
+	 *
+	 * @author Ante Gazibaric
+	 * @version 1.0
+	 *
+	 */
+	static class SyncWorkerAdapter implements AsyncWebWorker {
+
+		/**
+		 * Synchronous worker.
+		 */
+		private IWebWorker worker;
+
+		/**
+		 * Constructor that creates new {@link SyncWorkerAdapter} object.
+		 *
+		 * @param worker {@link #worker}
+		 */
+		SyncWorkerAdapter(IWebWorker worker) {
+			this.worker = worker;
+		}
+
+		@Override
+		public CompletionStage<Void> processRequestAsync(RequestContext context) {
+			try {
+				worker.processRequest(context);
+				return CompletableFuture.completedFuture(null);
+			} catch (Exception ex) {
+				return CompletableFuture.failedFuture(ex);
+			}
+		}
+
+	}
+
+}
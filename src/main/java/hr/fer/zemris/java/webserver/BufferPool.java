@@ -0,0 +1,343 @@
+package hr.fer.zemris.java.webserver;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.ReferenceQueue;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool of direct {@link ByteBuffer}s used for socket I/O. Buffers are grouped in
+ * size classes. Each class allocates large direct slabs and slices them into
+ * buffers of its size, so buffers are allocated rarely and never freed.
+ * When class reaches its memory limit, heap buffers that aren't pooled are handed out.
+ * <p>
+ * With leak detection turned on, every acquired buffer is tracked. Buffer that is
+ * garbage collected without being released is reported together with stack trace
+ * of its acquisition, and its memory is returned to the pool.
+ *
+ * @author Ante Gazibaric
+ * @version 1.0
+ *
+ */
+public class BufferPool {
+
+	/**
+	 * Number of buffers that were garbage collected without being released.
+	 */
+	public static final String LEAKED = "buffers.leaked";
+	/**
+	 * Number of bytes allocated in slabs.
+	 */
+	public static final String POOLED_BYTES = "buffers.pooledBytes";
+	/**
+	 * Number of buffers handed out that weren't pooled.
+	 */
+	public static final String UNPOOLED = "buffers.unpooled";
+
+	/**
+	 * Sizes of buffers in size classes.
+	 */
+	private static final int[] SIZES = {4 * 1024, 16 * 1024, 64 * 1024};
+	/**
+	 * Size of one slab in bytes.
+	 */
+	private static final int SLAB_SIZE = 1024 * 1024;
+
+	/**
+	 * Size classes.
+	 */
+	private SizeClass[] classes = new SizeClass[SIZES.length];
+	/**
+	 * Maximum number of bytes allocated by one size class.
+	 */
+	private long maxBytesPerClass;
+	/**
+	 * Metrics where pool is reported.
+	 */
+	private ServerMetrics metrics;
+	/**
+	 * Flag that shows if leak detection is turned on.
+	 */
+	private boolean leakDetection;
+	/**
+	 * Queue of trackers whose buffers were garbage collected.
+	 */
+	private ReferenceQueue<PooledBuffer> leakQueue = new ReferenceQueue<>();
+	/**
+	 * Trackers of acquired buffers, kept reachable until buffer is released.
+	 */
+	private Map<LeakTracker, Boolean> trackers = new ConcurrentHashMap<>();
+
+	/**
+	 * Constructor that creates new {@link BufferPool} object.
+	 *
+	 * @param maxBytesPerClass {@link #maxBytesPerClass}
+	 * @param leakDetection    {@link #leakDetection}
+	 * @param metrics          {@link #metrics}
+	 */
+	public BufferPool(long maxBytesPerClass, boolean leakDetection, ServerMetrics metrics) {
+		this.maxBytesPerClass = maxBytesPerClass;
+		this.leakDetection = leakDetection;
+		this.metrics = metrics;
+		for (int i = 0; i < SIZES.length; i++) {
+			classes[i] = new SizeClass(SIZES[i]);
+		}
+		metrics.registerGauge(POOLED_BYTES, () -> {
+			long bytes = 0;
+			for (SizeClass c : classes) {
+				bytes += c.allocated.get();
+			}
+			return bytes;
+		});
+	}
+
+	/**
+	 * Method acquires buffer with at least given capacity. Returned buffer is cleared
+	 * and must be released exactly once by {@link PooledBuffer#release()}.
+	 *
+	 * @param capacity minimum capacity in bytes
+	 * @return         acquired buffer
+	 */
+	public PooledBuffer acquire(int capacity) {
+		if (leakDetection) {
+			checkLeaks();
+		}
+		PooledBuffer buffer = null;
+		for (SizeClass c : classes) {
+			if (c.size >= capacity) {
+				buffer = c.take();
+				break;
+			}
+		}
+		if (buffer == null) {
+			metrics.increment(UNPOOLED);
+			return allocate(capacity);
+		}
+		buffer.acquired = true;
+		if (leakDetection) {
+			buffer.tracker = new LeakTracker(buffer, leakQueue);
+			trackers.put(buffer.tracker, Boolean.TRUE);
+		}
+		return buffer;
+	}
+
+	/**
+	 * Method allocates heap buffer that doesn't belong to any pool.
+	 * Releasing it does nothing.
+	 *
+	 * @param capacity capacity in bytes
+	 * @return         allocated buffer
+	 */
+	public static PooledBuffer allocate(int capacity) {
+		PooledBuffer buffer = new PooledBuffer(ByteBuffer.allocate(capacity), null);
+		buffer.acquired = true;
+		return buffer;
+	}
+
+	/**
+	 * Method reports buffers that were garbage collected without being released
+	 * and returns their memory to the pool.
+	 */
+	private void checkLeaks() {
+		LeakTracker tracker;
+		while ((tracker = (LeakTracker) leakQueue.poll()) != null) {
+			if (trackers.remove(tracker) == null)
+				continue;
+			metrics.increment(LEAKED);
+			System.err.println("Buffer of " + tracker.buffer.capacity() + " bytes was not released");
+			tracker.acquisition.printStackTrace();
+			tracker.owner.free.offer(new PooledBuffer(tracker.buffer, tracker.owner));
+		}
+	}
+
+	/**
+	 * Class represents buffer acquired from the pool.
+	 *
+	 * @author Ante Gazibaric
+	 * @version 1.0
+	 *
+	 */
+	public static class PooledBuffer {
+
+		/**
+		 * Buffer.
+		 */
+		private ByteBuffer buffer;
+		/**
+		 * Size class that owns buffer or {@code null} if buffer isn't pooled.
+		 */
+		private SizeClass owner;
+		/**
+		 * Flag that shows if buffer is acquired.
+		 */
+		private boolean acquired;
+		/**
+		 * Leak tracker of acquired buffer or {@code null} if it isn't tracked.
+		 */
+		private LeakTracker tracker;
+
+		/**
+		 * Constructor that creates new {@link PooledBuffer} object.
+		 *
+		 * @param buffer {@link #buffer}
+		 * @param owner  {@link #owner}
+		 */
+		private PooledBuffer(ByteBuffer buffer, SizeClass owner) {
+			this.buffer = buffer;
+			this.owner = owner;
+		}
+
+		/**
+		 * Method returns buffer. Buffer must not be used after it's released.
+		 *
+		 * @return buffer
+		 */
+		public ByteBuffer buffer() {
+			return buffer;
+		}
+
+		/**
+		 * Method returns buffer to the pool.
+		 *
+		 * @throws IllegalStateException if buffer has already been released
+		 */
+		public void release() {
+			if (!acquired)
+				throw new IllegalStateException("Buffer has already been released");
+			acquired = false;
+			if (tracker != null) {
+				owner.pool().trackers.remove(tracker);
+				tracker.clear();
+				tracker = null;
+			}
+			if (owner != null) {
+				buffer.clear();
+				owner.free.offer(this);
+			}
+		}
+
+	}
+
+	/**
+	 * Class represents buffers of one size.
+	 *
+	 * @author Ante Gazibaric
+	 * @version 1.0
+	 *
+	 */
+	private class SizeClass {
+
+		/**
+		 * Size of buffers.
+		 */
+		private int size;
+		/**
+		 * Buffers that aren't acquired.
+		 */
+		private Queue<PooledBuffer> free = new ConcurrentLinkedQueue<>();
+		/**
+		 * Number of bytes allocated in slabs.
+		 */
+		private AtomicLong allocated = new AtomicLong();
+
+		/**
+		 * Constructor that creates new {@link SizeClass} object.
+		 *
+		 * @param size {@link #size}
+		 */
+		private SizeClass(int size) {
+			this.size = size;
+		}
+
+		/**
+		 * Method returns pool that size class belongs to.
+		 *
+		 * @return pool of size class
+		 */
+		private BufferPool pool() {
+			return BufferPool.this;
+		}
+
+		/**
+		 * Method takes free buffer, allocating new slab if there are none.
+		 *
+		 * @return buffer or {@code null} if memory limit is reached
+		 */
+		private PooledBuffer take() {
+			PooledBuffer buffer = free.poll();
+			if (buffer != null)
+				return buffer;
+			synchronized (this) {
+				buffer = free.poll();
+				if (buffer != null)
+					return buffer;
+				if (allocated.get() + SLAB_SIZE > maxBytesPerClass)
+					return null;
+				allocated.addAndGet(SLAB_SIZE);
+				ByteBuffer slab = ByteBuffer.allocateDirect(SLAB_SIZE);
+				for (int offset = size; offset < SLAB_SIZE; offset += size) {
+					free.offer(new PooledBuffer(slice(slab, offset), this));
+				}
+				return new PooledBuffer(slice(slab, 0), this);
+			}
+		}
+
+		/**
+		 * Method returns part of slab that starts at given offset.
+		 *
+		 * @param slab   slab
+		 * @param offset offset of buffer in slab
+		 * @return       buffer
+		 */
+		private ByteBuffer slice(ByteBuffer slab, int offset) {
+			ByteBuffer duplicate = slab.duplicate();
+			duplicate.position(offset);
+			duplicate.limit(offset + size);
+			return duplicate.slice();
+		}
+
+	}
+
+	/**
+	 * Reference that is enqueued when acquired buffer becomes unreachable.
+	 * It keeps underlying memory so it can be returned to the pool.
+	 *
+	 * @author Ante Gazibaric
+	 * @version 1.0
+	 *
+	 */
+	private static class LeakTracker extends PhantomReference<PooledBuffer> {
+
+		/**
+		 * Memory of tracked buffer.
+		 */
+		private ByteBuffer buffer;
+		/**
+		 * Size class that owns buffer.
+		 */
+		private BufferPool.SizeClass owner;
+		/**
+		 * Stack trace of buffer's acquisition.
+		 */
+		private Throwable acquisition;
+
+		/**
+		 * Constructor that creates new {@link LeakTracker} object.
+		 *
+		 * @param referent tracked buffer
+		 * @param queue    queue where tracker is enqueued
+		 */
+		private LeakTracker(PooledBuffer referent, ReferenceQueue<PooledBuffer> queue) {
+			super(referent, queue);
+			this.buffer = referent.buffer;
+			this.owner = referent.owner;
+			this.acquisition = new Throwable("Buffer acquired here");
+		}
+
+	}
+
+}
@@ -0,0 +1,156 @@
+package hr.fer.zemris.java.webserver;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Class represents one byte range of a file requested with {@code Range} header.
+ * Both start and end positions are inclusive.
+ *
+ * @author Ante Gazibaric
+ * @version 1.0
+ *
+ */
+public class ByteRange {
+
+	/**
+	 * Maximum number of ranges in one request. Requests with more ranges are served whole.
+	 */
+	public static final int MAX_RANGES = 32;
+
+	/**
+	 * Position of first byte in range.
+	 */
+	private long start;
+	/**
+	 * Position of last byte in range.
+	 */
+	private long end;
+
+	/**
+	 * Constructor that creates new {@link ByteRange} object.
+	 *
+	 * @param start {@link #start}
+	 * @param end   {@link #end}
+	 */
+	public ByteRange(long start, long end) {
+		this.start = start;
+		this.end = end;
+	}
+
+	/**
+	 * Method returns position of first byte in range.
+	 *
+	 * @return position of first byte in range
+	 */
+	public long getStart() {
+		return start;
+	}
+
+	/**
+	 * Method returns position of last byte in range.
+	 *
+	 * @return position of last byte in range
+	 */
+	public long getEnd() {
+		return end;
+	}
+
+	/**
+	 * Method returns number of bytes in range.
+	 *
+	 * @return number of bytes in range
+	 */
+	public long getLength() {
+		return end - start + 1;
+	}
+
+	/**
+	 * Method returns value of {@code Content-Range} header for this range.
+	 *
+	 * @param length length of whole file
+	 * @return       value of {@code Content-Range} header
+	 */
+	public String toContentRange(long length) {
+		return "bytes " + start + "-" + end + "/" + length;
+	}
+
+	/**
+	 * Method parses value of {@code Range} header for file of given {@code length}.
+	 * Overlapping and adjacent ranges are merged and returned sorted by position.
+	 *
+	 * @param header value of {@code Range} header
+	 * @param length length of requested file
+	 * @return       list of satisfiable ranges, empty list if none of ranges is satisfiable
+	 *               or {@code null} if header is not valid and must be ignored
+	 */
+	public static List<ByteRange> parse(String header, long length) {
+		String value = header.trim();
+		if (!value.regionMatches(true, 0, "bytes=", 0, "bytes=".length()))
+			return null;
+
+		String[] specs = value.substring("bytes=".length()).split(",");
+		if (specs.length > MAX_RANGES)
+			return null;
+
+		List<ByteRange> ranges = new ArrayList<>();
+		for (String spec : specs) {
+			spec = spec.trim();
+			int dash = spec.indexOf('-');
+			if (dash < 0)
+				return null;
+			String first = spec.substring(0, dash).trim();
+			String last = spec.substring(dash + 1).trim();
+			try {
+				if (first.isEmpty()) {
+					// Suffix range: last N bytes
+					long suffix = Long.parseLong(last);
+					if (suffix < 0)
+						return null;
+					if (suffix > 0 && length > 0) {
+						ranges.add(new ByteRange(Math.max(0, length - suffix), length - 1));
+					}
+				} else {
+					long start = Long.parseLong(first);
+					long end = last.isEmpty() ? Long.MAX_VALUE : Long.parseLong(last);
+					if (start < 0 || end < start)
+						return null;
+					// Range that starts past the end of file is valid, but unsatisfiable
+					if (start < length) {
+						ranges.add(new ByteRange(start, Math.min(end, length - 1)));
+					}
+				}
+			} catch (NumberFormatException ex) {
+				return null;
+			}
+		}
+		return merge(ranges);
+	}
+
+	/**
+	 * Method merges overlapping and adjacent ranges.
+	 *
+	 * @param ranges ranges that are merged
+	 * @return       sorted list of merged ranges
+	 */
+	private static List<ByteRange> merge(List<ByteRange> ranges) {
+		if (ranges.size() < 2)
+			return ranges;
+		ranges.sort(Comparator.comparingLong(ByteRange::getStart));
+		List<ByteRange> merged = new ArrayList<>();
+		ByteRange current = ranges.get(0);
+		for (int i = 1; i < ranges.size(); i++) {
+			ByteRange next = ranges.get(i);
+			if (next.start <= current.end + 1) {
+				current = new ByteRange(current.start, Math.max(current.end, next.end));
+			} else {
+				merged.add(current);
+				current = next;
+			}
+		}
+		merged.add(current);
+		return merged;
+	}
+
+}
@@ -0,0 +1,231 @@
+package hr.fer.zemris.java.webserver;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Caching policies of server's responses, loaded from properties file.
+ * Key is either URL path glob that starts with '/' or mime type, value is
+ * {@code Cache-Control} header value, for example:
+ * <pre>
+ * /scripts/** = no-cache
+ * image/* = public, max-age=86400
+ * </pre>
+ * In globs '*' matches anything except '/', '**' matches anything and '?' matches
+ * one character. Path globs take precedence over mime types and longer patterns
+ * take precedence over shorter ones. Policies of mime types apply only to static
+ * files, because output of scripts and workers changes. If policy has {@code max-age} directive,
+ * {@code Expires} header is sent too, for HTTP/1.0 caches. Response that sets
+ * cookie may be stored only by client's private cache, so its policy is
+ * turned into private one and it has no {@code Expires} header.
+ *
+ * @author Ante Gazibaric
+ * @version 1.0
+ *
+ */
+public class CachePolicies {
+
+	/**
+	 * Pattern of {@code max-age} directive.
+	 */
+	private static final Pattern MAX_AGE = Pattern.compile("(?:^|[,\\s])max-age\\s*=\\s*(\\d+)");
+
+	/**
+	 * Policies in order in which they are tried.
+	 */
+	private List<CachePolicy> policies = new ArrayList<>();
+
+	/**
+	 * Method loads policies from given properties file.
+	 *
+	 * @param path         path to the properties file
+	 * @return             loaded policies
+	 * @throws IOException if reading file fails
+	 */
+	public static CachePolicies load(Path path) throws IOException {
+		Properties properties = new Properties();
+		try (InputStream is = Files.newInputStream(path)) {
+			properties.load(is);
+		}
+		CachePolicies cachePolicies = new CachePolicies();
+		for (String key : properties.stringPropertyNames()) {
+			cachePolicies.policies.add(new CachePolicy(key, properties.getProperty(key).trim()));
+		}
+		cachePolicies.policies.sort(Comparator.comparing((CachePolicy p) -> !p.pathPattern)
+				.thenComparing(p -> -p.pattern.length()));
+		return cachePolicies;
+	}
+
+	/**
+	 * Method returns policy for response on given URL path with given mime type.
+	 *
+	 * @param urlPath  requested URL path
+	 * @param mimeType mime type of response or {@code null} if only
+	 *                 policies of URL paths apply
+	 * @return         policy or {@code null} if none applies
+	 */
+	public CachePolicy find(String urlPath, String mimeType) {
+		for (CachePolicy policy : policies) {
+			if (policy.matches(urlPath, mimeType))
+				return policy;
+		}
+		return null;
+	}
+
+	/**
+	 * Method converts given glob to regular expression.
+	 *
+	 * @param glob glob
+	 * @return     compiled regular expression
+	 */
+	private static Pattern compileGlob(String glob) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < glob.length(); i++) {
+			char c = glob.charAt(i);
+			if (c == '*' && i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+				sb.append(".*");
+				i++;
+			} else if (c == '*') {
+				sb.append("[^/]*");
+			} else if (c == '?') {
+				sb.append("[^/]");
+			} else {
+				sb.append(Pattern.quote(String.valueOf(c)));
+			}
+		}
+		return Pattern.compile(sb.toString());
+	}
+
+	/**
+	 * Class represents caching policy of one pattern.
+	 *
+	 * @author Ante Gazibaric
+	 * @version 1.0
+	 *
+	 */
+	public static class CachePolicy {
+
+		/**
+		 * Pattern as given in configuration.
+		 */
+		private String pattern;
+		/**
+		 * Flag that shows if pattern is URL path glob, otherwise it's mime type.
+		 */
+		private boolean pathPattern;
+		/**
+		 * Compiled pattern.
+		 */
+		private Pattern regex;
+		/**
+		 * Value of {@code Cache-Control} header.
+		 */
+		private String cacheControl;
+		/**
+		 * Value of {@code Cache-Control} header for responses that set cookie.
+		 */
+		private String privateCacheControl;
+		/**
+		 * Value of {@code max-age} directive in seconds or -1 if there isn't one.
+		 */
+		private long maxAge = -1;
+
+		/**
+		 * Constructor that creates new {@link CachePolicy} object.
+		 *
+		 * @param pattern      {@link #pattern}
+		 * @param cacheControl {@link #cacheControl}
+		 */
+		private CachePolicy(String pattern, String cacheControl) {
+			this.pattern = pattern;
+			this.pathPattern = pattern.startsWith("/");
+			this.regex = compileGlob(pattern);
+			this.cacheControl = cacheControl;
+			this.privateCacheControl = toPrivate(cacheControl);
+			Matcher m = MAX_AGE.matcher(cacheControl);
+			if (m.find()) {
+				maxAge = Long.parseLong(m.group(1));
+			}
+		}
+
+		/**
+		 * Method checks if policy applies to response.
+		 *
+		 * @param urlPath  requested URL path
+		 * @param mimeType mime type of response
+		 * @return         {@code true} if policy applies, otherwise {@code false}
+		 */
+		private boolean matches(String urlPath, String mimeType) {
+			if (!pathPattern && mimeType == null)
+				return false;
+			return regex.matcher(pathPattern ? urlPath : mimeType).matches();
+		}
+
+		/**
+		 * Method returns value of {@code Cache-Control} header.
+		 *
+		 * @return value of {@code Cache-Control} header
+		 */
+		public String getCacheControl() {
+			return cacheControl;
+		}
+
+		/**
+		 * Method returns value of {@code Cache-Control} header for response that
+		 * sets cookie, which must not be stored by shared caches.
+		 *
+		 * @return value of {@code Cache-Control} header
+		 */
+		public String getPrivateCacheControl() {
+			return privateCacheControl;
+		}
+
+		/**
+		 * Method returns value of {@code Expires} header for response sent at given time.
+		 *
+		 * @param now current time in milliseconds
+		 * @return    value of {@code Expires} header or {@code null} if policy has no {@code max-age}
+		 */
+		public String getExpires(long now) {
+			return maxAge < 0 ? null : HttpDate.format(now + maxAge * 1000);
+		}
+
+		/**
+		 * Method converts given {@code Cache-Control} value to one that forbids
+		 * shared caches to store response. Directives {@code public} and
+		 * {@code s-maxage} are removed and {@code private} is added unless
+		 * response isn't stored at all.
+		 *
+		 * @param cacheControl value of {@code Cache-Control} header
+		 * @return             private value of {@code Cache-Control} header
+		 */
+		private static String toPrivate(String cacheControl) {
+			StringBuilder sb = new StringBuilder();
+			boolean restricted = false;
+			for (String directive : cacheControl.split(",")) {
+				directive = directive.trim();
+				String name = directive.toLowerCase();
+				if (directive.isEmpty() || name.equals("public") || name.startsWith("s-maxage"))
+					continue;
+				if (name.equals("no-store") || name.startsWith("private")) {
+					restricted = true;
+				}
+				sb.append(sb.length() == 0 ? "" : ", ").append(directive);
+			}
+			if (!restricted) {
+				sb.insert(0, sb.length() == 0 ? "private" : "private, ");
+			}
+			return sb.toString();
+		}
+
+	}
+
+}
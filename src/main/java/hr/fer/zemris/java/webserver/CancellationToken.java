@@ -0,0 +1,115 @@
+package hr.fer.zemris.java.webserver;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token that shows if processing of request should stop. Request is cancelled
+ * when its deadline passes or when it's cancelled explicitly, for example because
+ * client has disconnected. Workers that run for long should check token regularly,
+ * writing to context of cancelled request fails anyway.
+ *
+ * @author Ante Gazibaric
+ * @version 1.0
+ *
+ */
+public class CancellationToken {
+
+	/**
+	 * Number of requests that were cancelled.
+	 */
+	public static final String CANCELLED = "requests.cancelled";
+	/**
+	 * Reason of cancellation when deadline passes.
+	 */
+	private static final String DEADLINE_EXCEEDED = "Request deadline exceeded";
+
+	/**
+	 * Deadline in nanoseconds or {@code 0} if request has no deadline.
+	 */
+	private long deadline;
+	/**
+	 * Reason why request was cancelled or {@code null} if it wasn't cancelled explicitly.
+	 */
+	private volatile String reason;
+
+	/**
+	 * Constructor that creates new {@link CancellationToken} object.
+	 *
+	 * @param timeout time in milliseconds after which request is cancelled, {@code 0} if there is no deadline
+	 */
+	public CancellationToken(long timeout) {
+		this(timeout, System.nanoTime());
+	}
+
+	/**
+	 * Constructor that creates new {@link CancellationToken} object for request
+	 * whose deadline is counted from given time.
+	 *
+	 * @param timeout time in milliseconds after which request is cancelled, {@code 0} if there is no deadline
+	 * @param start   time in nanoseconds from which timeout is counted
+	 */
+	public CancellationToken(long timeout, long start) {
+		if (timeout < 0)
+			throw new IllegalArgumentException("Timeout must not be negative");
+		if (timeout > 0) {
+			deadline = start + TimeUnit.MILLISECONDS.toNanos(timeout);
+			if (deadline == 0) {
+				deadline = 1;
+			}
+		}
+	}
+
+	/**
+	 * Method cancels request. If request has already been cancelled, it does nothing.
+	 *
+	 * @param reason reason of cancellation
+	 */
+	public void cancel(String reason) {
+		if (this.reason == null) {
+			this.reason = reason;
+		}
+	}
+
+	/**
+	 * Method checks if request has been cancelled or its deadline has passed.
+	 *
+	 * @return {@code true} if request is cancelled, otherwise {@code false}
+	 */
+	public boolean isCancelled() {
+		return reason != null || deadline != 0 && System.nanoTime() - deadline >= 0;
+	}
+
+	/**
+	 * Method returns reason why request was cancelled.
+	 *
+	 * @return reason of cancellation or {@code null} if request isn't cancelled
+	 */
+	public String getReason() {
+		String reason = this.reason;
+		if (reason != null)
+			return reason;
+		return isCancelled() ? DEADLINE_EXCEEDED : null;
+	}
+
+	/**
+	 * Method returns time that remains until deadline.
+	 *
+	 * @return remaining time in milliseconds, {@link Long#MAX_VALUE} if request has no deadline
+	 */
+	public long getRemainingMillis() {
+		if (deadline == 0)
+			return Long.MAX_VALUE;
+		return Math.max(0, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()));
+	}
+
+	/**
+	 * Method throws exception if request has been cancelled.
+	 *
+	 * @throws RequestCancelledException if request is cancelled
+	 */
+	public void throwIfCancelled() {
+		if (isCancelled())
+			throw new RequestCancelledException(getReason());
+	}
+
+}
@@ -0,0 +1,86 @@
+package hr.fer.zemris.java.webserver;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Output stream that writes data using HTTP chunked transfer coding.
+ * Every write becomes one chunk, {@link #finish()} writes the last chunk.
+ * Underlying stream is never closed by this stream.
+ *
+ * @author Ante Gazibaric
+ * @version 1.0
+ *
+ */
+public class ChunkedOutputStream extends OutputStream {
+
+	/**
+	 * Line terminator.
+	 */
+	private static final byte[] CRLF = {'\r', '\n'};
+	/**
+	 * Last chunk followed by empty trailer.
+	 */
+	private static final byte[] LAST_CHUNK = "0\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+
+	/**
+	 * Stream where chunks are written.
+	 */
+	private OutputStream out;
+	/**
+	 * Flag that shows if last chunk has been written.
+	 */
+	private boolean finished;
+
+	/**
+	 * Constructor that creates new {@link ChunkedOutputStream} object.
+	 *
+	 * @param out {@link #out}
+	 */
+	public ChunkedOutputStream(OutputStream out) {
+		this.out = out;
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		write(new byte[] {(byte) b}, 0, 1);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		if (finished)
+			throw new IOException("Chunked stream is already finished");
+		// Zero length chunk would end the body
+		if (len == 0)
+			return;
+		out.write(Integer.toHexString(len).getBytes(StandardCharsets.US_ASCII));
+		out.write(CRLF);
+		out.write(b, off, len);
+		out.write(CRLF);
+	}
+
+	@Override
+	public void flush() throws IOException {
+		out.flush();
+	}
+
+	/**
+	 * Method writes last chunk. Nothing can be written after it.
+	 *
+	 * @throws IOException if writing fails
+	 */
+	public void finish() throws IOException {
+		if (finished)
+			return;
+		finished = true;
+		out.write(LAST_CHUNK);
+	}
+
+	@Override
+	public void close() throws IOException {
+		finish();
+		flush();
+	}
+
+}
@@ -0,0 +1,83 @@
+package hr.fer.zemris.java.webserver;
+
+/**
+ * Class contains methods for working with entity tags ({@code ETag} header values)
+ * and conditional request headers that carry them.
+ *
+ * @author Ante Gazibaric
+ * @version 1.0
+ *
+ */
+public class EntityTag {
+
+	/**
+	 * Private constructor, class contains only static methods.
+	 */
+	private EntityTag() {
+	}
+
+	/**
+	 * Method creates strong entity tag from given {@code value}.
+	 *
+	 * @param value opaque tag value
+	 * @return      quoted entity tag
+	 */
+	public static String strong(String value) {
+		return "\"" + value + "\"";
+	}
+
+	/**
+	 * Method checks if {@code If-None-Match} header matches given entity tag.
+	 * Weak comparison is used, as required for {@code If-None-Match}.
+	 *
+	 * @param ifNoneMatch value of {@code If-None-Match} header
+	 * @param etag        current entity tag
+	 * @return            {@code true} if header matches entity tag, otherwise {@code false}
+	 */
+	public static boolean matchesAny(String ifNoneMatch, String etag) {
+		String value = ifNoneMatch.trim();
+		if (value.equals("*"))
+			return true;
+		String opaque = opaque(etag);
+		for (String candidate : value.split(",")) {
+			if (opaque(candidate.trim()).equals(opaque))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Method checks if given {@code candidate} is strongly equal to given entity tag.
+	 * Weak tags never match strongly.
+	 *
+	 * @param candidate entity tag sent by client
+	 * @param etag      current entity tag
+	 * @return          {@code true} if tags are strongly equal, otherwise {@code false}
+	 */
+	public static boolean strongMatches(String candidate, String etag) {
+		String value = candidate.trim();
+		return !value.startsWith("W/") && !etag.startsWith("W/") && value.equals(etag);
+	}
+
+	/**
+	 * Method checks if given header value is entity tag (as opposed to HTTP date).
+	 *
+	 * @param value header value
+	 * @return      {@code true} if value is entity tag, otherwise {@code false}
+	 */
+	public static boolean isEntityTag(String value) {
+		String trimmed = value.trim();
+		return trimmed.startsWith("\"") || trimmed.startsWith("W/\"");
+	}
+
+	/**
+	 * Method returns entity tag without weakness indicator.
+	 *
+	 * @param etag entity tag
+	 * @return     entity tag without {@code W/} prefix
+	 */
+	private static String opaque(String etag) {
+		return etag.startsWith("W/") ? etag.substring(2) : etag;
+	}
+
+}
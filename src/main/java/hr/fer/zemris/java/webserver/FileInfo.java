@@ -0,0 +1,155 @@
+package hr.fer.zemris.java.webserver;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+/**
+ * Class represents metadata of a static file together with validators
+ * computed from it: entity tag built from modification time and size,
+ * and HTTP date of last modification.
+ *
+ * @author Ante Gazibaric
+ * @version 1.0
+ *
+ */
+public class FileInfo {
+
+	/**
+	 * Path of file.
+	 */
+	private Path path;
+	/**
+	 * Size of file in bytes.
+	 */
+	private long size;
+	/**
+	 * Time of last modification in milliseconds since epoch.
+	 */
+	private long lastModifiedMillis;
+	/**
+	 * Time of last modification as HTTP date.
+	 */
+	private String lastModified;
+	/**
+	 * Entity tag of file.
+	 */
+	private String etag;
+	/**
+	 * Cached content of small file or {@code null} if it isn't cached.
+	 */
+	private volatile ByteBuffer content;
+	/**
+	 * Time in nanoseconds until which metadata is trusted without reading file's attributes.
+	 */
+	private volatile long validUntil;
+
+	/**
+	 * Constructor that creates new {@link FileInfo} object.
+	 *
+	 * @param path               {@link #path}
+	 * @param size               {@link #size}
+	 * @param lastModifiedMillis {@link #lastModifiedMillis}
+	 */
+	public FileInfo(Path path, long size, long lastModifiedMillis) {
+		this.path = path;
+		this.size = size;
+		this.lastModifiedMillis = lastModifiedMillis;
+		this.lastModified = HttpDate.format(lastModifiedMillis);
+		this.etag = EntityTag.strong(Long.toHexString(lastModifiedMillis / 1000) + "-" + Long.toHexString(size));
+	}
+
+	/**
+	 * Method returns path of file.
+	 *
+	 * @return path of file
+	 */
+	public Path getPath() {
+		return path;
+	}
+
+	/**
+	 * Method returns size of file in bytes.
+	 *
+	 * @return size of file in bytes
+	 */
+	public long getSize() {
+		return size;
+	}
+
+	/**
+	 * Method returns time of last modification in milliseconds since epoch.
+	 *
+	 * @return time of last modification in milliseconds since epoch
+	 */
+	public long getLastModifiedMillis() {
+		return lastModifiedMillis;
+	}
+
+	/**
+	 * Method returns time of last modification as HTTP date.
+	 *
+	 * @return time of last modification as HTTP date
+	 */
+	public String getLastModified() {
+		return lastModified;
+	}
+
+	/**
+	 * Method returns entity tag of file.
+	 *
+	 * @return entity tag of file
+	 */
+	public String getETag() {
+		return etag;
+	}
+
+	/**
+	 * Method returns cached content of file.
+	 *
+	 * @return read-only view of file's content or {@code null} if content isn't cached
+	 */
+	public ByteBuffer getContent() {
+		ByteBuffer content = this.content;
+		return content == null ? null : content.duplicate();
+	}
+
+	/**
+	 * Method caches content of file.
+	 *
+	 * @param content file's content or {@code null} to drop cached content
+	 */
+	void setContent(ByteBuffer content) {
+		this.content = content == null ? null : content.asReadOnlyBuffer();
+	}
+
+	/**
+	 * Method checks if metadata can be trusted at given time without reading file's attributes.
+	 *
+	 * @param now current time in nanoseconds
+	 * @return    {@code true} if metadata is still valid
+	 */
+	boolean isValid(long now) {
+		return now - validUntil < 0;
+	}
+
+	/**
+	 * Method sets time until which metadata is trusted without reading file's attributes.
+	 *
+	 * @param validUntil time in nanoseconds
+	 */
+	void setValidUntil(long validUntil) {
+		this.validUntil = validUntil;
+	}
+
+	/**
+	 * Method checks if this metadata describes file of given size and modification time.
+	 *
+	 * @param size               current size of file
+	 * @param lastModifiedMillis current time of last modification
+	 * @return                   {@code true} if metadata is up to date, otherwise {@code false}
+	 */
+	public boolean isCurrent(long size, long lastModifiedMillis) {
+		return this.size == size && this.lastModifiedMillis == lastModifiedMillis;
+	}
+
+}
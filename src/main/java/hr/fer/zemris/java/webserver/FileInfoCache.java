@@ -0,0 +1,437 @@
+package hr.fer.zemris.java.webserver;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cache of static files' metadata and open files. Each lookup reads file's
+ * attributes once and reuses cached {@link FileInfo} (with its validators)
+ * while file's size and modification time stay the same. Attributes aren't
+ * read again until validity period of metadata passes, so change of file
+ * is noticed at most that long after it happened. Paths are normalized before
+ * they are used as keys, and least recently used metadata is evicted when
+ * number of entries exceeds the limit.
+ * <p>
+ * Content of small files is kept in memory up to configured total number
+ * of bytes. Content is evicted in its own least recently used order when
+ * that total is exceeded, independently of metadata, which stays cached.
+ * <p>
+ * Channels of files whose content isn't cached in memory can be kept open,
+ * up to configured number of descriptors. Least recently used channel is
+ * closed when limit is exceeded, but only after requests that use it are done.
+ *
+ * @author Ante Gazibaric
+ * @version 1.0
+ *
+ */
+public class FileInfoCache {
+
+	/**
+	 * Maximum number of cached entries. Least recently used entry is evicted when it's exceeded.
+	 */
+	private static final int MAX_ENTRIES = 10_000;
+	/**
+	 * Maximum size in bytes of file whose content is cached.
+	 */
+	private static final int MAX_CONTENT_SIZE = 16 * 1024;
+
+	/**
+	 * Cached metadata in order of use, least recently used first.
+	 */
+	private Map<Path, FileInfo> cache = new LinkedHashMap<Path, FileInfo>(16, 0.75f, true) {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Path, FileInfo> eldest) {
+			return size() > MAX_ENTRIES;
+		}
+	};
+	/**
+	 * Time in nanoseconds during which metadata is trusted without reading file's attributes.
+	 */
+	private long valid;
+	/**
+	 * Maximum number of channels kept open.
+	 */
+	private int maxOpenFiles;
+	/**
+	 * Open channels in order of use, least recently used first.
+	 */
+	private Map<Path, OpenFile> openFiles = new LinkedHashMap<>(16, 0.75f, true);
+	/**
+	 * Maximum total size in bytes of cached content.
+	 */
+	private long maxContentBytes;
+	/**
+	 * Total size in bytes of cached content.
+	 */
+	private long contentBytes;
+	/**
+	 * Metadata of files whose content is cached in order of use, least recently used first.
+	 */
+	private Map<Path, FileInfo> contents = new LinkedHashMap<>(16, 0.75f, true);
+
+	/**
+	 * Constructor that creates new {@link FileInfoCache} object which reads
+	 * attributes on every lookup and doesn't keep files or their content.
+	 */
+	public FileInfoCache() {
+		this(0, 0, 0);
+	}
+
+	/**
+	 * Constructor that creates new {@link FileInfoCache} object.
+	 *
+	 * @param valid           time in milliseconds during which metadata is trusted
+	 *                        without reading file's attributes
+	 * @param maxOpenFiles    {@link #maxOpenFiles}
+	 * @param maxContentBytes {@link #maxContentBytes}, {@code 0} if content isn't cached
+	 */
+	public FileInfoCache(long valid, int maxOpenFiles, long maxContentBytes) {
+		if (valid < 0 || maxOpenFiles < 0 || maxContentBytes < 0)
+			throw new IllegalArgumentException("Validity, number of open files and content size must not be negative");
+		this.valid = TimeUnit.MILLISECONDS.toNanos(valid);
+		this.maxOpenFiles = maxOpenFiles;
+		this.maxContentBytes = maxContentBytes;
+	}
+
+	/**
+	 * Method returns metadata of given file.
+	 *
+	 * @param path         path of file
+	 * @return             metadata of file
+	 * @throws IOException if file's attributes can't be read
+	 */
+	public FileInfo get(Path path) throws IOException {
+		path = path.normalize();
+		long now = System.nanoTime();
+		FileInfo info = getCached(path);
+		if (info != null && info.isValid(now))
+			return info;
+
+		BasicFileAttributes attributes;
+		try {
+			attributes = Files.readAttributes(path, BasicFileAttributes.class);
+		} catch (IOException ex) {
+			invalidate(path);
+			throw ex;
+		}
+		return update(path, info, attributes, now);
+	}
+
+	/**
+	 * Method returns metadata of given file if it's readable regular file.
+	 * Readability is checked only when file's attributes are read.
+	 *
+	 * @param path path of file
+	 * @return     metadata of file or {@code null} if file doesn't exist,
+	 *             isn't regular file or isn't readable
+	 */
+	public FileInfo find(Path path) {
+		path = path.normalize();
+		long now = System.nanoTime();
+		FileInfo info = getCached(path);
+		if (info != null && info.isValid(now))
+			return info;
+
+		try {
+			BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+			if (attributes.isRegularFile() && Files.isReadable(path))
+				return update(path, info, attributes, now);
+		} catch (IOException ex) {
+			// Missing or unreadable file is reported as not found, same as directory
+		}
+		invalidate(path);
+		return null;
+	}
+
+	/**
+	 * Method returns cached metadata of given file and marks it as recently used.
+	 *
+	 * @param path normalized path of file
+	 * @return     cached metadata or {@code null} if there isn't any
+	 */
+	private FileInfo getCached(Path path) {
+		synchronized (cache) {
+			return cache.get(path);
+		}
+	}
+
+	/**
+	 * Method updates metadata of given file with attributes that were just read.
+	 *
+	 * @param path       path of file
+	 * @param info       cached metadata or {@code null}
+	 * @param attributes file's attributes
+	 * @param now        time in nanoseconds when attributes were read
+	 * @return           current metadata
+	 */
+	private FileInfo update(Path path, FileInfo info, BasicFileAttributes attributes, long now) {
+		long size = attributes.size();
+		long lastModified = attributes.lastModifiedTime().toMillis();
+		if (info != null && info.isCurrent(size, lastModified)) {
+			info.setValidUntil(now + valid);
+			return info;
+		}
+
+		info = new FileInfo(path, size, lastModified);
+		info.setValidUntil(now + valid);
+		synchronized (cache) {
+			cache.put(path, info);
+		}
+		closeOpenFile(path);
+		dropContent(path);
+		return info;
+	}
+
+	/**
+	 * Method removes metadata of given file and closes its channel,
+	 * so that next lookup reads file's attributes.
+	 *
+	 * @param path path of file
+	 */
+	public void invalidate(Path path) {
+		path = path.normalize();
+		synchronized (cache) {
+			cache.remove(path);
+		}
+		closeOpenFile(path);
+		dropContent(path);
+	}
+
+	/**
+	 * Method returns content of file described by given metadata. Content of small
+	 * files is read once and kept while metadata is current, unless it's evicted
+	 * because total size of cached content exceeds the limit.
+	 *
+	 * @param info         metadata of file
+	 * @return             read-only view of file's content or {@code null} if file
+	 *                     is too large to be cached
+	 * @throws IOException if reading file fails
+	 */
+	public ByteBuffer getContent(FileInfo info) throws IOException {
+		ByteBuffer content = info.getContent();
+		if (content != null) {
+			synchronized (contents) {
+				// Marks content as recently used
+				contents.get(info.getPath());
+			}
+			return content;
+		}
+		if (info.getSize() > Math.min(MAX_CONTENT_SIZE, maxContentBytes))
+			return null;
+
+		byte[] bytes = Files.readAllBytes(info.getPath());
+		// File changed after its attributes were read
+		if (bytes.length != info.getSize())
+			return null;
+		content = ByteBuffer.wrap(bytes);
+		synchronized (contents) {
+			FileInfo previous = contents.put(info.getPath(), info);
+			if (previous != null) {
+				contentBytes -= previous.getSize();
+				previous.setContent(null);
+			}
+			info.setContent(content);
+			contentBytes += bytes.length;
+			Iterator<FileInfo> eldest = contents.values().iterator();
+			while (contentBytes > maxContentBytes) {
+				FileInfo evicted = eldest.next();
+				eldest.remove();
+				contentBytes -= evicted.getSize();
+				evicted.setContent(null);
+			}
+		}
+		return content.asReadOnlyBuffer();
+	}
+
+	/**
+	 * Method returns total size of content kept in memory by the cache.
+	 *
+	 * @return size of cached content in bytes
+	 */
+	public long getContentBytes() {
+		synchronized (contents) {
+			return contentBytes;
+		}
+	}
+
+	/**
+	 * Method drops cached content of given file.
+	 *
+	 * @param path path of file
+	 */
+	private void dropContent(Path path) {
+		if (maxContentBytes == 0)
+			return;
+		synchronized (contents) {
+			FileInfo info = contents.remove(path);
+			if (info != null) {
+				contentBytes -= info.getSize();
+				info.setContent(null);
+			}
+		}
+	}
+
+	/**
+	 * Method opens file described by given metadata for reading. Channel is taken
+	 * from the cache if it's open, otherwise it's opened and cached if limit of
+	 * open files allows it. Returned file must be closed when it's not used anymore,
+	 * which closes its channel if it isn't cached.
+	 *
+	 * @param info         metadata of file
+	 * @return             open file
+	 * @throws IOException if opening file fails
+	 */
+	public OpenFile open(FileInfo info) throws IOException {
+		Path path = info.getPath();
+		if (maxOpenFiles > 0) {
+			synchronized (openFiles) {
+				OpenFile file = openFiles.get(path);
+				if (file != null && file.info == info && file.retain())
+					return file;
+			}
+		}
+
+		OpenFile file = new OpenFile(info, FileChannel.open(path, StandardOpenOption.READ));
+		if (maxOpenFiles > 0) {
+			synchronized (openFiles) {
+				// Reference held by the cache
+				file.retain();
+				OpenFile previous = openFiles.put(path, file);
+				if (previous != null) {
+					previous.close();
+				}
+				if (openFiles.size() > maxOpenFiles) {
+					Iterator<OpenFile> eldest = openFiles.values().iterator();
+					eldest.next().close();
+					eldest.remove();
+				}
+			}
+		}
+		return file;
+	}
+
+	/**
+	 * Method returns number of channels kept open by the cache.
+	 *
+	 * @return number of open channels
+	 */
+	public int getOpenFiles() {
+		synchronized (openFiles) {
+			return openFiles.size();
+		}
+	}
+
+	/**
+	 * Method closes all channels kept open by the cache. Channels
+	 * that are in use are closed when requests are done with them.
+	 */
+	public void closeOpenFiles() {
+		synchronized (openFiles) {
+			openFiles.values().forEach(OpenFile::close);
+			openFiles.clear();
+		}
+	}
+
+	/**
+	 * Method removes channel of given file from the cache.
+	 *
+	 * @param path path of file
+	 */
+	private void closeOpenFile(Path path) {
+		if (maxOpenFiles == 0)
+			return;
+		synchronized (openFiles) {
+			OpenFile file = openFiles.remove(path);
+			if (file != null) {
+				file.close();
+			}
+		}
+	}
+
+	/**
+	 * Class represents file opened for reading. Channel is shared by the cache
+	 * and requests that use it, and it's closed when all of them have closed it.
+	 *
+	 * @author Ante Gazibaric
+	 * @version 1.0
+	 *
+	 */
+	public static class OpenFile implements AutoCloseable {
+
+		/**
+		 * Metadata of file when it was opened.
+		 */
+		private FileInfo info;
+		/**
+		 * Channel of file.
+		 */
+		private FileChannel channel;
+		/**
+		 * Number of holders that haven't closed file yet.
+		 */
+		private int references = 1;
+
+		/**
+		 * Constructor that creates new {@link OpenFile} object.
+		 *
+		 * @param info    {@link #info}
+		 * @param channel {@link #channel}
+		 */
+		private OpenFile(FileInfo info, FileChannel channel) {
+			this.info = info;
+			this.channel = channel;
+		}
+
+		/**
+		 * Method returns channel of file. Channel must be read only with
+		 * methods that take position, because it can be shared.
+		 *
+		 * @return channel of file
+		 */
+		public FileChannel getChannel() {
+			return channel;
+		}
+
+		/**
+		 * Method adds holder of file.
+		 *
+		 * @return {@code true} if holder was added, {@code false} if file is already closed
+		 */
+		private synchronized boolean retain() {
+			if (references == 0)
+				return false;
+			references++;
+			return true;
+		}
+
+		/**
+		 * Method removes holder of file and closes channel if it was last one.
+		 */
+		@Override
+		public void close() {
+			synchronized (this) {
+				if (references == 0 || --references > 0)
+					return;
+			}
+			try {
+				channel.close();
+			} catch (IOException ex) {
+				ex.printStackTrace();
+			}
+		}
+
+	}
+
+}
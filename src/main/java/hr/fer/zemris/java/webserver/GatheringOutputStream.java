@@ -0,0 +1,283 @@
+package hr.fer.zemris.java.webserver;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import hr.fer.zemris.java.webserver.BufferPool.PooledBuffer;
+
+/**
+ * Output stream that collects written data as list of segments and writes
+ * all of them to the channel with one gathering write when it's flushed.
+ * That way response header and body leave in the same system call.
+ * Small writes are copied into slab, which is direct buffer taken from
+ * {@link BufferPool}, large writes are written immediately together with
+ * collected segments, without copying. Slabs are returned to the pool
+ * when stream is closed.
+ *
+ * @author Ante Gazibaric
+ * @version 1.0
+ *
+ */
+public class GatheringOutputStream extends OutputStream {
+
+	/**
+	 * Size of slab into which small writes are copied.
+	 */
+	private static final int SLAB_SIZE = 16 * 1024;
+	/**
+	 * Size of write that is written without copying.
+	 */
+	private static final int DIRECT_WRITE_SIZE = 8 * 1024;
+	/**
+	 * Number of collected bytes after which segments are written.
+	 */
+	private static final int FLUSH_THRESHOLD = 64 * 1024;
+
+	/**
+	 * Channel to which segments are written.
+	 */
+	private GatheringByteChannel channel;
+	/**
+	 * Stream backed by the same channel that may contain buffered data,
+	 * flushed before first write so that order of bytes is preserved.
+	 */
+	private OutputStream previous;
+	/**
+	 * Pool of slabs or {@code null} if slabs are heap buffers.
+	 */
+	private BufferPool pool;
+	/**
+	 * Collected segments.
+	 */
+	private ByteBuffer[] segments = new ByteBuffer[16];
+	/**
+	 * Number of collected segments.
+	 */
+	private int segmentCount;
+	/**
+	 * Number of collected bytes.
+	 */
+	private long pendingBytes;
+	/**
+	 * Current slab or {@code null} if nothing has been written since stream was flushed.
+	 */
+	private PooledBuffer slab;
+	/**
+	 * Full slabs whose data hasn't been written yet.
+	 */
+	private List<PooledBuffer> fullSlabs = new ArrayList<>();
+	/**
+	 * Start of current slab's part that isn't yet in segments.
+	 */
+	private int slabStart;
+	/**
+	 * Flag that shows if stream is closed.
+	 */
+	private boolean closed;
+
+	/**
+	 * Constructor that creates new {@link GatheringOutputStream} object.
+	 *
+	 * @param channel  {@link #channel}
+	 * @param previous {@link #previous}, can be {@code null}
+	 * @param pool     {@link #pool}, can be {@code null}
+	 */
+	public GatheringOutputStream(GatheringByteChannel channel, OutputStream previous, BufferPool pool) {
+		this.channel = channel;
+		this.previous = previous;
+		this.pool = pool;
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		slabWithRoom().put((byte) b);
+		pendingBytes++;
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		if (len >= DIRECT_WRITE_SIZE) {
+			// Caller may reuse array, so it's written before method returns
+			ensureOpen();
+			sealSlab();
+			addSegment(ByteBuffer.wrap(b, off, len));
+			flush();
+			return;
+		}
+		ByteBuffer target = slabWithRoom();
+		int copied = Math.min(len, target.remaining());
+		target.put(b, off, copied);
+		if (copied < len) {
+			newSlab().put(b, off + copied, len - copied);
+		}
+		pendingBytes += len;
+		if (pendingBytes >= FLUSH_THRESHOLD) {
+			flush();
+		}
+	}
+
+	/**
+	 * Method adds given buffer as segment without copying it. Content of buffer
+	 * must not change until stream is flushed.
+	 *
+	 * @param buffer       buffer whose remaining bytes are written
+	 * @throws IOException if writing fails
+	 */
+	public void write(ByteBuffer buffer) throws IOException {
+		ensureOpen();
+		sealSlab();
+		addSegment(buffer.duplicate());
+		if (pendingBytes >= FLUSH_THRESHOLD) {
+			flush();
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		sealSlab();
+		if (segmentCount == 0)
+			return;
+		if (previous != null) {
+			previous.flush();
+			previous = null;
+		}
+		int offset = 0;
+		while (offset < segmentCount) {
+			channel.write(segments, offset, segmentCount - offset);
+			while (offset < segmentCount && !segments[offset].hasRemaining()) {
+				offset++;
+			}
+		}
+		Arrays.fill(segments, 0, segmentCount, null);
+		segmentCount = 0;
+		pendingBytes = 0;
+		releaseFullSlabs();
+		// Segments are written, so slab can be reused from the beginning
+		if (slab != null) {
+			slab.buffer().clear();
+			slabStart = 0;
+		}
+	}
+
+	/**
+	 * Method flushes stream and returns its slabs to the pool.
+	 * Slabs are returned even if flushing fails.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (closed)
+			return;
+		try {
+			flush();
+		} finally {
+			closed = true;
+			releaseFullSlabs();
+			if (slab != null) {
+				slab.release();
+				slab = null;
+			}
+		}
+	}
+
+	/**
+	 * Method returns current slab, making sure it has room for at least one byte.
+	 *
+	 * @return             current slab
+	 * @throws IOException if stream is closed
+	 */
+	private ByteBuffer slabWithRoom() throws IOException {
+		ensureOpen();
+		if (slab == null) {
+			slab = acquireSlab();
+			slabStart = 0;
+		} else if (!slab.buffer().hasRemaining()) {
+			return newSlab();
+		}
+		return slab.buffer();
+	}
+
+	/**
+	 * Method seals current slab and starts new one.
+	 *
+	 * @return new slab
+	 */
+	private ByteBuffer newSlab() {
+		sealSlab();
+		fullSlabs.add(slab);
+		slab = acquireSlab();
+		slabStart = 0;
+		return slab.buffer();
+	}
+
+	/**
+	 * Method adds part of current slab that isn't yet in segments as new segment.
+	 */
+	private void sealSlab() {
+		if (slab == null)
+			return;
+		ByteBuffer buffer = slab.buffer();
+		if (buffer.position() > slabStart) {
+			ByteBuffer segment = buffer.duplicate();
+			segment.limit(buffer.position());
+			segment.position(slabStart);
+			segments = ensureSegments();
+			segments[segmentCount++] = segment;
+			slabStart = buffer.position();
+		}
+	}
+
+	/**
+	 * Method acquires new slab.
+	 *
+	 * @return new slab
+	 */
+	private PooledBuffer acquireSlab() {
+		return pool != null ? pool.acquire(SLAB_SIZE) : BufferPool.allocate(SLAB_SIZE);
+	}
+
+	/**
+	 * Method returns full slabs to the pool.
+	 */
+	private void releaseFullSlabs() {
+		for (PooledBuffer full : fullSlabs) {
+			full.release();
+		}
+		fullSlabs.clear();
+	}
+
+	/**
+	 * Method adds given segment.
+	 *
+	 * @param segment segment that is added
+	 */
+	private void addSegment(ByteBuffer segment) {
+		segments = ensureSegments();
+		segments[segmentCount++] = segment;
+		pendingBytes += segment.remaining();
+	}
+
+	/**
+	 * Method returns segments array that has room for one more segment.
+	 *
+	 * @return segments array
+	 */
+	private ByteBuffer[] ensureSegments() {
+		return segmentCount < segments.length ? segments : Arrays.copyOf(segments, segments.length * 2);
+	}
+
+	/**
+	 * Method checks that stream isn't closed.
+	 *
+	 * @throws IOException if stream is closed
+	 */
+	private void ensureOpen() throws IOException {
+		if (closed)
+			throw new IOException("Stream is closed");
+	}
+
+}
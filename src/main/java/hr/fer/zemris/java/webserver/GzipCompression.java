@@ -0,0 +1,144 @@
+package hr.fer.zemris.java.webserver;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+
+/**
+ * Class holds server's gzip compression settings and pool of {@link Deflater}s
+ * that are reused between responses.
+ *
+ * @author Ante Gazibaric
+ * @version 1.0
+ *
+ */
+public class GzipCompression {
+
+	/**
+	 * Maximum number of idle deflaters kept in the pool.
+	 */
+	private static final int MAX_POOLED = 64;
+	/**
+	 * Size of compressor's output buffer.
+	 */
+	static final int BUFFER_SIZE = 8192;
+
+	/**
+	 * Compression level, from 1 (fastest) to 9 (best).
+	 */
+	private int level;
+	/**
+	 * Minimum size in bytes of response that is compressed.
+	 */
+	private int minSize;
+	/**
+	 * Idle deflaters.
+	 */
+	private Queue<Deflater> pool = new ConcurrentLinkedQueue<>();
+	/**
+	 * Number of idle deflaters.
+	 */
+	private AtomicInteger pooled = new AtomicInteger();
+
+	/**
+	 * Constructor that creates new {@link GzipCompression} object.
+	 *
+	 * @param level   {@link #level}
+	 * @param minSize {@link #minSize}
+	 */
+	public GzipCompression(int level, int minSize) {
+		if (level < 1 || level > 9)
+			throw new IllegalArgumentException("Compression level must be between 1 and 9, was: " + level);
+		this.level = level;
+		this.minSize = Math.max(0, minSize);
+	}
+
+	/**
+	 * Method returns minimum size in bytes of response that is compressed.
+	 *
+	 * @return minimum size of compressed response
+	 */
+	public int getMinSize() {
+		return minSize;
+	}
+
+	/**
+	 * Method takes deflater from the pool or creates new one if pool is empty.
+	 *
+	 * @return deflater that produces raw deflate data
+	 */
+	public Deflater acquire() {
+		Deflater deflater = pool.poll();
+		if (deflater == null)
+			return new Deflater(level, true);
+		pooled.decrementAndGet();
+		return deflater;
+	}
+
+	/**
+	 * Method resets given deflater and returns it to the pool.
+	 *
+	 * @param deflater deflater that is no longer used
+	 */
+	public void release(Deflater deflater) {
+		deflater.reset();
+		if (pooled.incrementAndGet() > MAX_POOLED) {
+			pooled.decrementAndGet();
+			deflater.end();
+			return;
+		}
+		pool.offer(deflater);
+	}
+
+	/**
+	 * Method checks if content of given mime type is worth compressing.
+	 *
+	 * @param mimeType mime type of content
+	 * @return         {@code true} if content is compressible, otherwise {@code false}
+	 */
+	public static boolean isCompressible(String mimeType) {
+		return mimeType.startsWith("text/")
+				|| mimeType.startsWith("application/javascript")
+				|| mimeType.startsWith("application/json")
+				|| mimeType.startsWith("application/xml")
+				|| mimeType.startsWith("image/svg+xml");
+	}
+
+	/**
+	 * Method checks if client accepts gzip content coding according to
+	 * its {@code Accept-Encoding} header.
+	 *
+	 * @param acceptEncoding value of {@code Accept-Encoding} header, can be {@code null}
+	 * @return               {@code true} if client accepts gzip, otherwise {@code false}
+	 */
+	public static boolean acceptsGzip(String acceptEncoding) {
+		if (acceptEncoding == null)
+			return false;
+		boolean accepted = false;
+		for (String coding : acceptEncoding.split(",")) {
+			String[] parts = coding.trim().split(";");
+			String name = parts[0].trim();
+			boolean gzip = name.equalsIgnoreCase("gzip") || name.equalsIgnoreCase("x-gzip");
+			if (!gzip && !name.equals("*"))
+				continue;
+			boolean allowed = true;
+			for (int i = 1; i < parts.length; i++) {
+				String param = parts[i].trim();
+				if (param.startsWith("q=")) {
+					try {
+						allowed = Double.parseDouble(param.substring(2)) > 0;
+					} catch (NumberFormatException ex) {
+						allowed = false;
+					}
+				}
+			}
+			// Explicit gzip entry takes precedence over wildcard
+			if (gzip)
+				return allowed;
+			accepted = allowed;
+		}
+		return accepted;
+	}
+
+}
@@ -0,0 +1,376 @@
+package hr.fer.zemris.java.webserver;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writer that assembles HTTP response header directly as ASCII bytes.
+ * Status lines of standard statuses, common header names and server's
+ * {@code Date} header (refreshed once per second) are cached as byte arrays,
+ * so writing header doesn't create intermediate strings.
+ *
+ * @author Ante Gazibaric
+ * @version 1.0
+ *
+ */
+public class HeaderWriter {
+
+	/**
+	 * Line terminator.
+	 */
+	private static final byte[] CRLF = {'\r', '\n'};
+	/**
+	 * Beginning of status line.
+	 */
+	private static final byte[] HTTP_1_1 = ascii("HTTP/1.1 ");
+	/**
+	 * Separator between header name and value.
+	 */
+	private static final byte[] SEPARATOR = ascii(": ");
+	/**
+	 * Content-Length header name.
+	 */
+	public static final byte[] CONTENT_LENGTH = ascii("Content-Length: ");
+	/**
+	 * Content-Type header name.
+	 */
+	public static final byte[] CONTENT_TYPE = ascii("Content-Type: ");
+	/**
+	 * Set-Cookie header name.
+	 */
+	public static final byte[] SET_COOKIE = ascii("Set-Cookie: ");
+
+	/**
+	 * Reason phrases of standard statuses, indexed by status code.
+	 */
+	private static final String[] REASONS = new String[600];
+	/**
+	 * Cached status lines of standard statuses, indexed by status code.
+	 */
+	private static final byte[][] STATUS_LINES = new byte[600][];
+	/**
+	 * Cached names of common headers, with separator.
+	 */
+	private static final Map<String, byte[]> NAMES = new HashMap<>();
+
+	static {
+		reason(200, "OK");
+		reason(204, "No Content");
+		reason(206, "Partial Content");
+		reason(301, "Moved Permanently");
+		reason(302, "Found");
+		reason(304, "Not Modified");
+		reason(400, "Bad Request");
+		reason(403, "Forbidden");
+		reason(404, "Not Found");
+		reason(405, "Method Not Allowed");
+		reason(416, "Range Not Satisfiable");
+		reason(500, "Internal Server Error");
+		reason(503, "Service Unavailable");
+
+		for (String name : new String[] {"Accept-Ranges", "Cache-Control", "Content-Encoding", "Content-Range",
+				"ETag", "Expires", "Last-Modified", "Location", "Retry-After", "Transfer-Encoding", "Vary"}) {
+			NAMES.put(name, ascii(name + ": "));
+		}
+	}
+
+	/**
+	 * {@code Date} header line of current second.
+	 */
+	private static volatile CachedDate cachedDate;
+
+	/**
+	 * Written bytes.
+	 */
+	private byte[] buffer;
+	/**
+	 * Number of written bytes.
+	 */
+	private int count;
+
+	/**
+	 * Constructor that creates new {@link HeaderWriter} object.
+	 */
+	public HeaderWriter() {
+		this(512);
+	}
+
+	/**
+	 * Constructor that creates new {@link HeaderWriter} object.
+	 *
+	 * @param capacity initial capacity in bytes
+	 */
+	public HeaderWriter(int capacity) {
+		buffer = new byte[capacity];
+	}
+
+	/**
+	 * Method writes status line.
+	 *
+	 * @param statusCode status code
+	 * @param statusText status text
+	 * @return           this writer
+	 */
+	public HeaderWriter statusLine(int statusCode, String statusText) {
+		if (statusCode >= 0 && statusCode < REASONS.length && statusText.equals(REASONS[statusCode])) {
+			return write(STATUS_LINES[statusCode]);
+		}
+		write(HTTP_1_1);
+		writeNumber(statusCode);
+		writeByte(' ');
+		writeText(statusText);
+		return write(CRLF);
+	}
+
+	/**
+	 * Method writes header of given name and value.
+	 *
+	 * @param name  header name
+	 * @param value header value
+	 * @return      this writer
+	 */
+	public HeaderWriter header(String name, String value) {
+		byte[] cached = NAMES.get(name);
+		if (cached != null) {
+			write(cached);
+		} else {
+			writeText(name);
+			write(SEPARATOR);
+		}
+		writeText(value);
+		return write(CRLF);
+	}
+
+	/**
+	 * Method writes header of given cached name, which already contains separator, and value.
+	 *
+	 * @param name  header name followed by separator
+	 * @param value header value
+	 * @return      this writer
+	 */
+	public HeaderWriter header(byte[] name, String value) {
+		write(name);
+		writeText(value);
+		return write(CRLF);
+	}
+
+	/**
+	 * Method writes header of given cached name, which already contains separator, and numeric value.
+	 *
+	 * @param name  header name followed by separator
+	 * @param value header value
+	 * @return      this writer
+	 */
+	public HeaderWriter header(byte[] name, long value) {
+		write(name);
+		writeNumber(value);
+		return write(CRLF);
+	}
+
+	/**
+	 * Method writes server's {@code Date} header.
+	 *
+	 * @return this writer
+	 */
+	public HeaderWriter date() {
+		return write(dateLine());
+	}
+
+	/**
+	 * Method writes line terminator, which ends header line or whole header.
+	 *
+	 * @return this writer
+	 */
+	public HeaderWriter endLine() {
+		return write(CRLF);
+	}
+
+	/**
+	 * Method writes given bytes.
+	 *
+	 * @param bytes bytes that are written
+	 * @return      this writer
+	 */
+	public HeaderWriter write(byte[] bytes) {
+		ensureCapacity(bytes.length);
+		System.arraycopy(bytes, 0, buffer, count, bytes.length);
+		count += bytes.length;
+		return this;
+	}
+
+	/**
+	 * Method writes given text. ASCII characters are written directly,
+	 * text that contains other characters is encoded as UTF-8.
+	 *
+	 * @param text text that is written
+	 * @return     this writer
+	 */
+	public HeaderWriter writeText(String text) {
+		int length = text.length();
+		ensureCapacity(length);
+		for (int i = 0; i < length; i++) {
+			char c = text.charAt(i);
+			if (c >= 0x80) {
+				// Count hasn't been advanced yet, so ASCII prefix is overwritten
+				return write(text.getBytes(StandardCharsets.UTF_8));
+			}
+			buffer[count + i] = (byte) c;
+		}
+		count += length;
+		return this;
+	}
+
+	/**
+	 * Method writes decimal representation of given number.
+	 *
+	 * @param value number that is written
+	 * @return      this writer
+	 */
+	public HeaderWriter writeNumber(long value) {
+		if (value < 0) {
+			// Long.MIN_VALUE can't be negated
+			return writeText(Long.toString(value));
+		}
+		int digits = 1;
+		for (long v = value; v >= 10; v /= 10) {
+			digits++;
+		}
+		ensureCapacity(digits);
+		for (int i = count + digits - 1; i >= count; i--) {
+			buffer[i] = (byte) ('0' + value % 10);
+			value /= 10;
+		}
+		count += digits;
+		return this;
+	}
+
+	/**
+	 * Method writes one byte.
+	 *
+	 * @param b byte that is written
+	 * @return  this writer
+	 */
+	public HeaderWriter writeByte(int b) {
+		ensureCapacity(1);
+		buffer[count++] = (byte) b;
+		return this;
+	}
+
+	/**
+	 * Method writes all written bytes to given output stream.
+	 *
+	 * @param os           output stream
+	 * @throws IOException if writing fails
+	 */
+	public void writeTo(OutputStream os) throws IOException {
+		os.write(buffer, 0, count);
+	}
+
+	/**
+	 * Method returns copy of written bytes.
+	 *
+	 * @return written bytes
+	 */
+	public byte[] toByteArray() {
+		return Arrays.copyOf(buffer, count);
+	}
+
+	/**
+	 * Method returns number of written bytes.
+	 *
+	 * @return number of written bytes
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * Method discards written bytes so that writer can be reused.
+	 */
+	public void reset() {
+		count = 0;
+	}
+
+	/**
+	 * Method returns {@code Date} header line of current second, including line terminator.
+	 *
+	 * @return {@code Date} header line
+	 */
+	public static byte[] dateLine() {
+		long second = System.currentTimeMillis() / 1000;
+		CachedDate date = cachedDate;
+		if (date == null || date.second != second) {
+			date = new CachedDate(second, ascii("Date: " + HttpDate.format(second * 1000) + "\r\n"));
+			cachedDate = date;
+		}
+		return date.line;
+	}
+
+	/**
+	 * Method makes sure that given number of bytes can be written.
+	 *
+	 * @param length number of bytes
+	 */
+	private void ensureCapacity(int length) {
+		if (count + length > buffer.length) {
+			buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, count + length));
+		}
+	}
+
+	/**
+	 * Method registers reason phrase of standard status and caches its status line.
+	 *
+	 * @param statusCode status code
+	 * @param reason     reason phrase
+	 */
+	private static void reason(int statusCode, String reason) {
+		REASONS[statusCode] = reason;
+		STATUS_LINES[statusCode] = ascii("HTTP/1.1 " + statusCode + " " + reason + "\r\n");
+	}
+
+	/**
+	 * Method encodes given text as ASCII.
+	 *
+	 * @param text text
+	 * @return     ASCII bytes
+	 */
+	private static byte[] ascii(String text) {
+		return text.getBytes(StandardCharsets.US_ASCII);
+	}
+
+	/**
+	 * Class represents {@code Date} header line of one second.
+	 *
+	 * @author Ante Gazibaric
+	 * @version 1.0
+	 *
+	 */
+	private static class CachedDate {
+
+		/**
+		 * Second since epoch.
+		 */
+		private long second;
+		/**
+		 * Header line.
+		 */
+		private byte[] line;
+
+		/**
+		 * Constructor that creates new {@link CachedDate} object.
+		 *
+		 * @param second {@link #second}
+		 * @param line   {@link #line}
+		 */
+		private CachedDate(long second, byte[] line) {
+			this.second = second;
+			this.line = line;
+		}
+
+	}
+
+}
@@ -0,0 +1,56 @@
+package hr.fer.zemris.java.webserver;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+
+/**
+ * Class contains methods for formatting and parsing dates used in HTTP headers
+ * ({@code Sun, 06 Nov 1994 08:49:37 GMT}).
+ *
+ * @author Ante Gazibaric
+ * @version 1.0
+ *
+ */
+public class HttpDate {
+
+	/**
+	 * Formatter of HTTP dates.
+	 */
+	private static final DateTimeFormatter FORMATTER =
+			DateTimeFormatter.ofPattern("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US).withZone(ZoneOffset.UTC);
+
+	/**
+	 * Private constructor, class contains only static methods.
+	 */
+	private HttpDate() {
+	}
+
+	/**
+	 * Method formats given time as HTTP date.
+	 *
+	 * @param millis time in milliseconds since epoch
+	 * @return       HTTP date
+	 */
+	public static String format(long millis) {
+		return FORMATTER.format(Instant.ofEpochMilli(millis));
+	}
+
+	/**
+	 * Method parses given HTTP date.
+	 *
+	 * @param date HTTP date
+	 * @return     time in milliseconds since epoch or -1 if date is not valid
+	 */
+	public static long parse(String date) {
+		try {
+			return ZonedDateTime.parse(date.trim(), FORMATTER).toInstant().toEpochMilli();
+		} catch (DateTimeParseException ex) {
+			return -1;
+		}
+	}
+
+}
@@ -0,0 +1,134 @@
+package hr.fer.zemris.java.webserver;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * In-process connector to {@link SmartHttpServer}. It feeds raw request bytes into the
+ * server's full request pipeline (parsing, sessions, dispatching, workers and scripts)
+ * and captures response into reusable buffer, without opening any socket.
+ * Server doesn't have to be started.
+ * <p>
+ * Connector is not thread safe, each thread should use its own connector.
+ * Returned response is valid until next exchange.
+ *
+ * @author Ante Gazibaric
+ * @version 1.0
+ *
+ */
+public class LoopbackConnector {
+
+	/**
+	 * Server that processes requests.
+	 */
+	private SmartHttpServer server;
+	/**
+	 * Buffer where response is captured.
+	 */
+	private ResponseBuffer response = new ResponseBuffer();
+
+	/**
+	 * Constructor that creates new {@link LoopbackConnector} object.
+	 *
+	 * @param server {@link #server}
+	 */
+	public LoopbackConnector(SmartHttpServer server) {
+		this.server = server;
+	}
+
+	/**
+	 * Method sends given raw {@code request} to the server and returns captured response.
+	 *
+	 * @param request raw request bytes
+	 * @return        buffer that contains whole response
+	 */
+	public ResponseBuffer exchange(byte[] request) {
+		response.reset();
+		server.serve(new ByteArrayInputStream(request), response);
+		return response;
+	}
+
+	/**
+	 * Method sends given raw {@code request} to the server and returns captured response.
+	 *
+	 * @param request raw request
+	 * @return        buffer that contains whole response
+	 */
+	public ResponseBuffer exchange(String request) {
+		return exchange(request.getBytes(StandardCharsets.US_ASCII));
+	}
+
+	/**
+	 * Method sends GET request for given {@code urlPath} and returns captured response.
+	 *
+	 * @param urlPath requested path with optional parameters
+	 * @return        buffer that contains whole response
+	 */
+	public ResponseBuffer get(String urlPath) {
+		return exchange("GET " + urlPath + " HTTP/1.1\r\nHost: localhost\r\n\r\n");
+	}
+
+	/**
+	 * Buffer that captures response. Its internal array is kept between exchanges.
+	 *
+	 * @author Ante Gazibaric
+	 * @version 1.0
+	 *
+	 */
+	public static class ResponseBuffer extends ByteArrayOutputStream {
+
+		/**
+		 * Constructor that creates new {@link ResponseBuffer} object.
+		 */
+		private ResponseBuffer() {
+			super(8192);
+		}
+
+		/**
+		 * Method returns internal array that contains response.
+		 * Only first {@link #size()} bytes are valid.
+		 *
+		 * @return internal array that contains response
+		 */
+		public byte[] array() {
+			return buf;
+		}
+
+		/**
+		 * Method returns status code from response's status line.
+		 *
+		 * @return status code or -1 if there is no valid status line
+		 */
+		public int getStatusCode() {
+			// "HTTP/1.1 200"
+			if (count < 12 || buf[8] != ' ')
+				return -1;
+			int code = 0;
+			for (int i = 9; i < 12; i++) {
+				if (buf[i] < '0' || buf[i] > '9')
+					return -1;
+				code = code * 10 + buf[i] - '0';
+			}
+			return code;
+		}
+
+		/**
+		 * Method returns response body, that is everything after the empty line.
+		 *
+		 * @param charset charset used for decoding body
+		 * @return        decoded body
+		 */
+		public String getBody(Charset charset) {
+			for (int i = 0; i + 3 < count; i++) {
+				if (buf[i] == '\r' && buf[i + 1] == '\n' && buf[i + 2] == '\r' && buf[i + 3] == '\n') {
+					return new String(buf, i + 4, count - i - 4, charset);
+				}
+			}
+			return "";
+		}
+
+	}
+
+}
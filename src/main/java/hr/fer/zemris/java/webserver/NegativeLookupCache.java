@@ -0,0 +1,445 @@
+package hr.fer.zemris.java.webserver;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Cache of URL paths that don't exist in document root, so that requests for
+ * them are answered without touching the file system. It consists of Bloom
+ * filter built from all files in document root, which rejects most missing
+ * paths on its own, and bounded LRU of paths that were looked up and not found,
+ * which catches repeated paths filter lets through.
+ * <p>
+ * Document root is watched with {@link WatchService}. When file is created or
+ * deleted, filter is rebuilt and LRU is cleared, so new file is found as soon
+ * as watcher has processed the event. Cache works only while it's started,
+ * and only for normalized paths, others always go to the file system.
+ *
+ * @author Ante Gazibaric
+ * @version 1.0
+ *
+ */
+public class NegativeLookupCache {
+
+	/**
+	 * Number of requests answered by the cache.
+	 */
+	public static final String HITS = "negativeCache.hits";
+	/**
+	 * Number of paths in LRU.
+	 */
+	public static final String ENTRIES = "negativeCache.entries";
+	/**
+	 * Number of times filter was rebuilt.
+	 */
+	public static final String REBUILDS = "negativeCache.rebuilds";
+
+	/**
+	 * Number of filter's bits per file, gives about 1% false positives.
+	 */
+	private static final int BITS_PER_FILE = 10;
+	/**
+	 * Number of bits set for each file.
+	 */
+	private static final int HASHES = 7;
+
+	/**
+	 * Document root whose files are tracked.
+	 */
+	private Path documentRoot;
+	/**
+	 * Maximum number of paths in LRU.
+	 */
+	private int maxEntries;
+	/**
+	 * Metrics where hits and rebuilds are reported.
+	 */
+	private ServerMetrics metrics;
+	/**
+	 * Missing paths in order of use, least recently used first.
+	 */
+	private Map<String, Boolean> missing;
+	/**
+	 * Number of times LRU was cleared, used for discarding lookups that started before it.
+	 */
+	private volatile long generation;
+	/**
+	 * Filter of existing files or {@code null} if it hasn't been built.
+	 */
+	private volatile BloomFilter files;
+	/**
+	 * Flag that shows if document root is watched, cache isn't used otherwise.
+	 */
+	private volatile boolean watching;
+	/**
+	 * Service that watches document root.
+	 */
+	private WatchService watchService;
+	/**
+	 * Thread that processes watch events.
+	 */
+	private Thread watcherThread;
+
+	/**
+	 * Constructor that creates new {@link NegativeLookupCache} object.
+	 *
+	 * @param documentRoot {@link #documentRoot}
+	 * @param maxEntries   {@link #maxEntries}
+	 * @param metrics      {@link #metrics}
+	 */
+	public NegativeLookupCache(Path documentRoot, int maxEntries, ServerMetrics metrics) {
+		if (maxEntries <= 0)
+			throw new IllegalArgumentException("Maximum number of entries must be positive");
+		this.documentRoot = documentRoot;
+		this.maxEntries = maxEntries;
+		this.metrics = metrics;
+		this.missing = new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+				return size() > NegativeLookupCache.this.maxEntries;
+			}
+		};
+		metrics.registerGauge(ENTRIES, () -> {
+			synchronized (missing) {
+				return missing.size();
+			}
+		});
+	}
+
+	/**
+	 * Method starts watching document root and builds filter. If document root
+	 * can't be watched, error is reported and cache stays unused.
+	 */
+	public synchronized void start() {
+		if (watcherThread != null)
+			return;
+		try {
+			watchService = documentRoot.getFileSystem().newWatchService();
+			register(documentRoot, watchService);
+		} catch (IOException ex) {
+			ex.printStackTrace();
+			closeWatchService();
+			return;
+		}
+		rebuild();
+		watching = true;
+		WatchService service = watchService;
+		watcherThread = new Thread(() -> watch(service), "negative-lookup-watcher");
+		watcherThread.setDaemon(true);
+		watcherThread.start();
+	}
+
+	/**
+	 * Method stops watching document root and empties the cache.
+	 */
+	public synchronized void stop() {
+		if (watcherThread == null)
+			return;
+		watching = false;
+		closeWatchService();
+		watcherThread = null;
+		files = null;
+		invalidate();
+	}
+
+	/**
+	 * Method checks if given URL path is known to be missing from document root.
+	 *
+	 * @param urlPath requested URL path
+	 * @return        {@code true} if path is missing, {@code false} if it may exist
+	 */
+	public boolean isMissing(String urlPath) {
+		if (!watching || !isNormalized(urlPath))
+			return false;
+		BloomFilter filter = files;
+		boolean missingPath = filter != null && !filter.mightContain(urlPath);
+		if (!missingPath) {
+			synchronized (missing) {
+				missingPath = missing.get(urlPath) != null;
+			}
+		}
+		if (missingPath) {
+			metrics.increment(HITS);
+		}
+		return missingPath;
+	}
+
+	/**
+	 * Method returns current generation of the cache. It must be read before
+	 * file system is searched for path, and passed to {@link #recordMissing(String, long)}.
+	 *
+	 * @return generation of the cache
+	 */
+	public long getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * Method records that given URL path wasn't found in document root. Path isn't
+	 * recorded if document root has changed since lookup started, because file
+	 * could have been created after it wasn't found.
+	 *
+	 * @param urlPath    requested URL path
+	 * @param generation generation of the cache when lookup started
+	 */
+	public void recordMissing(String urlPath, long generation) {
+		if (!watching || !isNormalized(urlPath))
+			return;
+		synchronized (missing) {
+			if (generation == this.generation) {
+				missing.put(urlPath, Boolean.TRUE);
+			}
+		}
+	}
+
+	/**
+	 * Method processes watch events until watch service is closed. Events that
+	 * arrive together are processed at once, followed by one rebuild of filter.
+	 *
+	 * @param service watch service of document root
+	 */
+	private void watch(WatchService service) {
+		try {
+			while (true) {
+				WatchKey key = service.take();
+				do {
+					for (WatchEvent<?> event : key.pollEvents()) {
+						if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+							Path created = ((Path) key.watchable()).resolve((Path) event.context());
+							if (Files.isDirectory(created)) {
+								registerQuietly(created, service);
+							}
+						}
+					}
+					key.reset();
+					key = service.poll();
+				} while (key != null);
+				rebuild();
+			}
+		} catch (InterruptedException | ClosedWatchServiceException ex) {
+			return;
+		}
+	}
+
+	/**
+	 * Method builds filter from files that are currently in document root and clears LRU.
+	 * If document root can't be read, only LRU is used until next rebuild.
+	 */
+	private void rebuild() {
+		List<String> paths = new ArrayList<>();
+		BloomFilter filter;
+		try (Stream<Path> tree = Files.walk(documentRoot, FileVisitOption.FOLLOW_LINKS)) {
+			tree.filter(Files::isRegularFile).forEach(file -> paths.add(toUrlPath(file)));
+			filter = new BloomFilter(paths.size());
+			paths.forEach(filter::add);
+		} catch (IOException | UncheckedIOException ex) {
+			// Files were removed while tree was walked, their events trigger another rebuild
+			filter = null;
+		}
+		files = filter;
+		invalidate();
+		metrics.increment(REBUILDS);
+	}
+
+	/**
+	 * Method clears LRU and starts new generation.
+	 */
+	private void invalidate() {
+		synchronized (missing) {
+			missing.clear();
+			generation++;
+		}
+	}
+
+	/**
+	 * Method registers given directory and all directories below it with given watch service.
+	 *
+	 * @param start   directory
+	 * @param service watch service
+	 * @throws IOException if directory can't be registered
+	 */
+	private static void register(Path start, WatchService service) throws IOException {
+		try (Stream<Path> tree = Files.walk(start, FileVisitOption.FOLLOW_LINKS)) {
+			Iterator<Path> directories = tree.filter(Files::isDirectory).iterator();
+			while (directories.hasNext()) {
+				directories.next().register(service,
+						StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE);
+			}
+		} catch (UncheckedIOException ex) {
+			throw ex.getCause();
+		}
+	}
+
+	/**
+	 * Method registers given directory with given watch service and reports error if registering fails.
+	 *
+	 * @param directory directory
+	 * @param service   watch service
+	 */
+	private static void registerQuietly(Path directory, WatchService service) {
+		try {
+			register(directory, service);
+		} catch (IOException ex) {
+			ex.printStackTrace();
+		}
+	}
+
+	/**
+	 * Method closes watch service if it's open.
+	 */
+	private void closeWatchService() {
+		if (watchService == null)
+			return;
+		try {
+			watchService.close();
+		} catch (IOException ex) {
+			ex.printStackTrace();
+		}
+		watchService = null;
+	}
+
+	/**
+	 * Method returns URL path of given file in document root.
+	 *
+	 * @param file file in document root
+	 * @return     URL path
+	 */
+	private String toUrlPath(Path file) {
+		return "/" + documentRoot.relativize(file).toString().replace(File.separatorChar, '/');
+	}
+
+	/**
+	 * Method checks if given URL path is normalized, which means that it has
+	 * no empty segments, including trailing one, and no '.' or '..' segments.
+	 * Only normalized paths can be compared to paths of files, file system
+	 * ignores trailing '/', so {@code /index.html/} finds file {@code /index.html}.
+	 *
+	 * @param urlPath URL path
+	 * @return        {@code true} if path is normalized
+	 */
+	private static boolean isNormalized(String urlPath) {
+		int length = urlPath.length();
+		if (length == 0 || urlPath.charAt(0) != '/')
+			return false;
+		if (urlPath.charAt(length - 1) == '/')
+			return false;
+		int start = 1;
+		while (start < length) {
+			int end = urlPath.indexOf('/', start);
+			if (end < 0) {
+				end = length;
+			}
+			int segment = end - start;
+			if (segment == 0
+					|| segment == 1 && urlPath.charAt(start) == '.'
+					|| segment == 2 && urlPath.startsWith("..", start))
+				return false;
+			start = end + 1;
+		}
+		return true;
+	}
+
+	/**
+	 * Bloom filter of URL paths. Filter never says that added path is missing,
+	 * but it can say that missing path exists.
+	 *
+	 * @author Ante Gazibaric
+	 * @version 1.0
+	 *
+	 */
+	private static class BloomFilter {
+
+		/**
+		 * Bits of filter.
+		 */
+		private long[] bits;
+		/**
+		 * Number of bits.
+		 */
+		private long size;
+
+		/**
+		 * Constructor that creates new {@link BloomFilter} object.
+		 *
+		 * @param entries number of paths that will be added
+		 */
+		BloomFilter(int entries) {
+			bits = new long[Math.max(1, (int) (((long) entries * BITS_PER_FILE + 63) / 64))];
+			size = bits.length * 64L;
+		}
+
+		/**
+		 * Method adds given path.
+		 *
+		 * @param path URL path
+		 */
+		void add(String path) {
+			long hash = hash(path);
+			int h1 = (int) hash;
+			int h2 = (int) (hash >>> 32);
+			for (int i = 0; i < HASHES; i++) {
+				long index = Math.floorMod(h1 + i * h2, size);
+				bits[(int) (index >>> 6)] |= 1L << index;
+			}
+		}
+
+		/**
+		 * Method checks if given path might have been added.
+		 *
+		 * @param path URL path
+		 * @return     {@code false} if path certainly wasn't added
+		 */
+		boolean mightContain(String path) {
+			long hash = hash(path);
+			int h1 = (int) hash;
+			int h2 = (int) (hash >>> 32);
+			for (int i = 0; i < HASHES; i++) {
+				long index = Math.floorMod(h1 + i * h2, size);
+				if ((bits[(int) (index >>> 6)] & 1L << index) == 0)
+					return false;
+			}
+			return true;
+		}
+
+		/**
+		 * Method computes 64-bit hash of given path, FNV-1a of its characters
+		 * followed by mixing step, so both halves of hash are well distributed.
+		 *
+		 * @param path URL path
+		 * @return     hash of path
+		 */
+		private static long hash(String path) {
+			long hash = 0xcbf29ce484222325L;
+			for (int i = 0, n = path.length(); i < n; i++) {
+				hash ^= path.charAt(i);
+				hash *= 0x100000001b3L;
+			}
+			hash ^= hash >>> 33;
+			hash *= 0xff51afd7ed558ccdL;
+			hash ^= hash >>> 33;
+			hash *= 0xc4ceb9fe1a85ec53L;
+			hash ^= hash >>> 33;
+			return hash;
+		}
+
+	}
+
+}
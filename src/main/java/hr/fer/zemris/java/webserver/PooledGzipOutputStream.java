@@ -0,0 +1,83 @@
+package hr.fer.zemris.java.webserver;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Output stream that writes data in gzip format using given {@link Deflater}.
+ * Unlike {@link java.util.zip.GZIPOutputStream} it doesn't own its deflater,
+ * so deflater can be taken from a pool and returned to it after {@link #finish()}.
+ * Underlying stream is never closed by this stream.
+ *
+ * @author Ante Gazibaric
+ * @version 1.0
+ *
+ */
+public class PooledGzipOutputStream extends DeflaterOutputStream {
+
+	/**
+	 * Gzip header: magic number, deflate method, no flags, no modification time, unknown OS.
+	 */
+	private static final byte[] HEADER = {0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0, 0, 0};
+
+	/**
+	 * Checksum of uncompressed data.
+	 */
+	private CRC32 crc = new CRC32();
+	/**
+	 * Flag that shows if stream has been finished.
+	 */
+	private boolean finished;
+
+	/**
+	 * Constructor that creates new {@link PooledGzipOutputStream} object and writes gzip header.
+	 * Given deflater must be created with {@code nowrap} set to {@code true}.
+	 *
+	 * @param out          stream where compressed data is written
+	 * @param deflater     deflater used for compression
+	 * @param bufferSize   size of output buffer
+	 * @throws IOException if writing header fails
+	 */
+	public PooledGzipOutputStream(OutputStream out, Deflater deflater, int bufferSize) throws IOException {
+		super(out, deflater, bufferSize);
+		out.write(HEADER);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		super.write(b, off, len);
+		crc.update(b, off, len);
+	}
+
+	@Override
+	public void finish() throws IOException {
+		if (finished)
+			return;
+		finished = true;
+		super.finish();
+		writeInt((int) crc.getValue());
+		writeInt((int) def.getBytesRead());
+	}
+
+	@Override
+	public void close() throws IOException {
+		finish();
+		out.flush();
+	}
+
+	/**
+	 * Method writes given value in little-endian order.
+	 *
+	 * @param value        value that is written
+	 * @throws IOException if writing fails
+	 */
+	private void writeInt(int value) throws IOException {
+		out.write(new byte[] {
+				(byte) value, (byte) (value >> 8), (byte) (value >> 16), (byte) (value >> 24)
+		});
+	}
+
+}
@@ -0,0 +1,150 @@
+package hr.fer.zemris.java.webserver;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+
+/**
+ * Store of gzip compressed variants of static files. Variants are kept in separate
+ * directory that mirrors structure of document root. Every variant has the same
+ * modification time as its source file, so stale variant is recognized and
+ * rebuilt on first access after source file changes.
+ *
+ * @author Ante Gazibaric
+ * @version 1.0
+ *
+ */
+public class PrecompressedFiles {
+
+	/**
+	 * Server's document root.
+	 */
+	private Path documentRoot;
+	/**
+	 * Directory where compressed variants are stored.
+	 */
+	private Path variantsRoot;
+	/**
+	 * Map of known extensions and their mime types.
+	 */
+	private Map<String, String> mimeTypes;
+	/**
+	 * Minimum size in bytes of file that gets compressed variant.
+	 */
+	private int minSize;
+	/**
+	 * Cache of files' metadata.
+	 */
+	private FileInfoCache fileInfoCache;
+
+	/**
+	 * Constructor that creates new {@link PrecompressedFiles} object.
+	 *
+	 * @param documentRoot  {@link #documentRoot}
+	 * @param variantsRoot  {@link #variantsRoot}
+	 * @param mimeTypes     {@link #mimeTypes}
+	 * @param minSize       {@link #minSize}
+	 * @param fileInfoCache {@link #fileInfoCache}
+	 */
+	public PrecompressedFiles(Path documentRoot, Path variantsRoot, Map<String, String> mimeTypes,
+			int minSize, FileInfoCache fileInfoCache) {
+		this.documentRoot = documentRoot;
+		this.variantsRoot = variantsRoot.normalize();
+		this.mimeTypes = mimeTypes;
+		this.minSize = minSize;
+		this.fileInfoCache = fileInfoCache;
+	}
+
+	/**
+	 * Method builds variants of every compressible file in document root that
+	 * doesn't have current variant.
+	 */
+	public void generateAll() {
+		try (Stream<Path> files = Files.walk(documentRoot)) {
+			files.filter(Files::isRegularFile)
+				.filter(f -> !f.startsWith(variantsRoot))
+				.filter(f -> GzipCompression.isCompressible(
+						RequestParser.resolveMimeType(f.getFileName().toString(), mimeTypes)))
+				.forEach(f -> {
+					try {
+						getVariant(f, fileInfoCache.get(f));
+					} catch (IOException ex) {
+						ex.printStackTrace();
+					}
+				});
+		} catch (IOException ex) {
+			ex.printStackTrace();
+		}
+	}
+
+	/**
+	 * Method returns metadata of compressed variant of given file. Variant is built
+	 * if it doesn't exist or if it's older than file.
+	 *
+	 * @param file         file in document root
+	 * @param info         metadata of file
+	 * @return             metadata of variant or {@code null} if file is too small,
+	 *                     compression doesn't make it smaller or variant would be
+	 *                     outside of variants directory
+	 * @throws IOException if building variant fails
+	 */
+	public FileInfo getVariant(Path file, FileInfo info) throws IOException {
+		if (info.getSize() < minSize)
+			return null;
+		Path variant = variantsRoot.resolve(documentRoot.relativize(file).toString() + ".gz").normalize();
+		// Variant is never written outside of its directory, whatever path of file is
+		if (!variant.startsWith(variantsRoot))
+			return null;
+
+		FileInfo variantInfo;
+		try {
+			variantInfo = fileInfoCache.get(variant);
+		} catch (NoSuchFileException ex) {
+			variantInfo = null;
+		}
+		if (variantInfo == null || variantInfo.getLastModifiedMillis() != info.getLastModifiedMillis()) {
+			compress(file, variant, info.getLastModifiedMillis());
+			fileInfoCache.invalidate(variant);
+			variantInfo = fileInfoCache.get(variant);
+		}
+		// Variant is kept even if it's useless so it isn't rebuilt on every request
+		return variantInfo.getSize() < info.getSize() ? variantInfo : null;
+	}
+
+	/**
+	 * Method writes compressed variant of given file. Variant is written to
+	 * temporary file and then moved in place, so readers never see partial variant.
+	 *
+	 * @param file         source file
+	 * @param variant      path of variant
+	 * @param lastModified modification time of source file
+	 * @throws IOException if compression fails
+	 */
+	private static void compress(Path file, Path variant, long lastModified) throws IOException {
+		Files.createDirectories(variant.getParent());
+		Path temp = Files.createTempFile(variant.getParent(), variant.getFileName().toString(), ".tmp");
+		Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION, true);
+		try {
+			try (InputStream is = Files.newInputStream(file);
+					OutputStream os = Files.newOutputStream(temp);
+					PooledGzipOutputStream gzip = new PooledGzipOutputStream(os, deflater,
+							GzipCompression.BUFFER_SIZE)) {
+				is.transferTo(gzip);
+			}
+			Files.setLastModifiedTime(temp, FileTime.fromMillis(lastModified));
+			Files.move(temp, variant, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			deflater.end();
+			Files.deleteIfExists(temp);
+		}
+	}
+
+}
@@ -0,0 +1,26 @@
+package hr.fer.zemris.java.webserver;
+
+/**
+ * Exception thrown when processing of cancelled request continues.
+ *
+ * @author Ante Gazibaric
+ * @version 1.0
+ *
+ */
+public class RequestCancelledException extends RuntimeException {
+
+	/**
+	 * Default serial version UID.
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Constructor that creates new {@link RequestCancelledException} object.
+	 *
+	 * @param message reason of cancellation
+	 */
+	public RequestCancelledException(String message) {
+		super(message);
+	}
+
+}
@@ -1,15 +1,23 @@
 package hr.fer.zemris.java.webserver;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.zip.Deflater;
 
 /**
  * Class represents context for server request.
@@ -20,6 +28,11 @@ import java.util.Set;
  */
 public class RequestContext {
 
+	/**
+	 * Number of file bytes above which file is transferred directly to the channel
+	 * instead of being gathered with header.
+	 */
+	private static final long TRANSFER_THRESHOLD = 64 * 1024;
 	/**
 	 * Output stream where it writes given data.
 	 */
@@ -27,7 +40,7 @@ public class RequestContext {
 	/**
 	 * Charset used for decoding given data.
 	 */
-	private Charset charset;
+	private Charset charset = StandardCharsets.UTF_8;
 	/**
 	 * Character encoding.
 	 */
@@ -72,6 +85,91 @@ public class RequestContext {
 	 * Length of content that is written.
 	 */
 	private Long contentLength;
+	/**
+	 * Additional response headers.
+	 */
+	private Map<String, String> headers = new LinkedHashMap<>();
+	/**
+	 * Channel of the client connection or {@code null} if there isn't one.
+	 * If it's set, files are transferred directly to it.
+	 */
+	private WritableByteChannel outputChannel;
+	/**
+	 * Stream that collects header and body and writes them to {@link #outputChannel}
+	 * together, or {@code null} if channel doesn't support gathering writes.
+	 */
+	private GatheringOutputStream gatheringStream;
+	/**
+	 * Buffer of response body if response is buffered so that its entity tag
+	 * can be computed or so that it can be written from any thread, otherwise {@code null}.
+	 */
+	private ByteArrayOutputStream bodyBuffer;
+	/**
+	 * Hash of buffered response body, updated as body is written, or {@code null}
+	 * if entity tag isn't computed.
+	 */
+	private XxHash64 bodyHash;
+	/**
+	 * Value of client's {@code If-None-Match} header.
+	 */
+	private String ifNoneMatch;
+	/**
+	 * Server's compression settings or {@code null} if compression is turned off.
+	 */
+	private GzipCompression compression;
+	/**
+	 * Flag that shows if client accepts gzip coded responses.
+	 */
+	private boolean acceptsGzip;
+	/**
+	 * Flag that shows if response body of unknown length can be sent using chunked transfer coding.
+	 */
+	private boolean chunkingAllowed;
+	/**
+	 * Flag that shows if uncompressed body of unknown length is sent using chunked transfer coding.
+	 */
+	private boolean chunkedBody;
+	/**
+	 * Stream where response body is written after header has been written.
+	 */
+	private OutputStream bodyStream;
+	/**
+	 * Beginning of response body whose length isn't known, held back until it's
+	 * known whether body is large enough to be compressed, otherwise {@code null}.
+	 */
+	private ByteArrayOutputStream pendingBody;
+	/**
+	 * Compressing stream of response body or {@code null} if body isn't compressed.
+	 */
+	private PooledGzipOutputStream gzipStream;
+	/**
+	 * Chunked stream of response body or {@code null} if body isn't chunked.
+	 */
+	private ChunkedOutputStream chunkedStream;
+	/**
+	 * Deflater used by {@link #gzipStream}.
+	 */
+	private Deflater deflater;
+	/**
+	 * Caching policies of responses or {@code null} if no caching headers are sent.
+	 */
+	private CachePolicies cachePolicies;
+	/**
+	 * Requested URL path used for choosing caching policy.
+	 */
+	private String urlPath;
+	/**
+	 * Flag that shows if policies of mime types apply, otherwise only policies of URL paths do.
+	 */
+	private boolean mimeTypePolicies;
+	/**
+	 * Writer used for assembling response header.
+	 */
+	private HeaderWriter headerWriter = new HeaderWriter();
+	/**
+	 * Token that shows if processing of request should stop.
+	 */
+	private CancellationToken cancellationToken = new CancellationToken(0);
 	
 	/**
 	 * Constructor that creates new {@link RequestContext} object.
@@ -92,6 +190,7 @@ public class RequestContext {
 		this.outputCookies = outputCookies == null ? new ArrayList<>() : outputCookies;
 		this.temporaryParameters = temporaryParameters == null ? new HashMap<>() : temporaryParameters;
 		this.dispatcher = dispatcher;
+		this.bodyStream = outputStream;
 	}
 	
 	/**
@@ -228,9 +327,19 @@ public class RequestContext {
 	 */
 	public void setEncoding(String encoding) {
 		checkHeaderGenerated();
+		this.charset = Charset.forName(encoding);
 		this.encoding = encoding;
 	}
 
+	/**
+	 * Method returns charset used for encoding written text.
+	 * 
+	 * @return charset of written text
+	 */
+	public Charset getCharset() {
+		return charset;
+	}
+
 	/**
 	 * Method returns status code.
 	 * 
@@ -288,6 +397,278 @@ public class RequestContext {
 		this.mimeType = mimeType;
 	}
 	
+	/**
+	 * Method adds response header of given {@code name} and {@code value}.
+	 * If header with given name was already added, its value is replaced.
+	 * 
+	 * @param name  header name
+	 * @param value header value
+	 */
+	public void addHeader(String name, String value) {
+		checkHeaderGenerated();
+		headers.put(name, value);
+	}
+	
+	/**
+	 * Method sets channel of the client connection that backs output stream.
+	 * If channel supports gathering writes, header and body are collected and
+	 * written together when response is finished or enough data is collected.
+	 * 
+	 * @param outputChannel channel of the client connection
+	 */
+	void setOutputChannel(WritableByteChannel outputChannel) {
+		checkHeaderGenerated();
+		this.outputChannel = outputChannel;
+		if (outputStream instanceof GatheringOutputStream) {
+			gatheringStream = (GatheringOutputStream) outputStream;
+		} else if (outputChannel instanceof GatheringByteChannel) {
+			gatheringStream = new GatheringOutputStream((GatheringByteChannel) outputChannel, outputStream, null);
+			outputStream = bodyStream = gatheringStream;
+		}
+	}
+
+	/**
+	 * Method prepares context for response of new request that is written to given stream,
+	 * so that context can be reused instead of creating new one. Properties of previous response,
+	 * its headers and compression state are discarded and deflater it held is returned to the pool.
+	 * Parameter maps and cookie list are kept as they are, caller is responsible for clearing them.
+	 *
+	 * @param outputStream         {@link #outputStream}
+	 * @param persistentParameters {@link #persistentParameters}
+	 */
+	void reset(OutputStream outputStream, Map<String, String> persistentParameters) {
+		this.outputStream = Objects.requireNonNull(outputStream, "Output stream must not be null");
+		this.persistentParameters = persistentParameters == null ? new HashMap<>() : persistentParameters;
+		bodyStream = outputStream;
+		if (deflater != null) {
+			compression.release(deflater);
+			deflater = null;
+		}
+		charset = StandardCharsets.UTF_8;
+		encoding = "UTF-8";
+		statusCode = 200;
+		statusText = "OK";
+		mimeType = "text/html";
+		headerGenerated = false;
+		contentLength = null;
+		headers.clear();
+		outputChannel = null;
+		gatheringStream = null;
+		bodyBuffer = null;
+		bodyHash = null;
+		ifNoneMatch = null;
+		compression = null;
+		acceptsGzip = false;
+		chunkingAllowed = false;
+		chunkedBody = false;
+		pendingBody = null;
+		gzipStream = null;
+		chunkedStream = null;
+		cachePolicies = null;
+		urlPath = null;
+		mimeTypePolicies = false;
+		headerWriter.reset();
+		cancellationToken = new CancellationToken(0);
+	}
+
+	/**
+	 * Method turns on buffering of response body. Buffered response is sent by {@link #finish()}
+	 * with entity tag computed from body's hash, or as {@code 304 Not Modified} if
+	 * given {@code ifNoneMatch} matches that entity tag.
+	 * 
+	 * @param ifNoneMatch value of client's {@code If-None-Match} header, can be {@code null}
+	 */
+	void enableContentETag(String ifNoneMatch) {
+		checkHeaderGenerated();
+		this.ifNoneMatch = ifNoneMatch;
+		bodyBuffer = new ByteArrayOutputStream();
+		bodyHash = new XxHash64();
+	}
+	
+	/**
+	 * Method returns token that shows if processing of request should stop.
+	 * Request is cancelled when its deadline passes or client disconnects.
+	 * Writing to context of cancelled request throws {@link RequestCancelledException}.
+	 * 
+	 * @return cancellation token of request
+	 */
+	public CancellationToken getCancellationToken() {
+		return cancellationToken;
+	}
+	
+	/**
+	 * Method sets token that shows if processing of request should stop.
+	 * 
+	 * @param cancellationToken cancellation token of request
+	 */
+	void setCancellationToken(CancellationToken cancellationToken) {
+		this.cancellationToken = Objects.requireNonNull(cancellationToken, "Cancellation token must not be null");
+	}
+	
+	/**
+	 * Method turns on buffering of response body, so that writing never blocks on client's
+	 * connection and can be done from any thread. Buffered response is sent by {@link #finish()}.
+	 */
+	void enableBuffering() {
+		checkHeaderGenerated();
+		if (bodyBuffer == null) {
+			bodyBuffer = new ByteArrayOutputStream();
+		}
+	}
+	
+	/**
+	 * Method turns on gzip compression of response body. Body is compressed if its
+	 * mime type is compressible, response status is {@code 200} and body isn't smaller
+	 * than configured minimum size. Body of unknown length is held back until
+	 * minimum size is reached, so small responses are sent uncompressed.
+	 * 
+	 * @param compression     server's compression settings
+	 * @param acceptsGzip     flag that shows if client accepts gzip coded responses
+	 * @param chunkingAllowed flag that shows if client understands chunked transfer coding
+	 */
+	void setCompression(GzipCompression compression, boolean acceptsGzip, boolean chunkingAllowed) {
+		checkHeaderGenerated();
+		this.compression = compression;
+		this.acceptsGzip = acceptsGzip;
+		this.chunkingAllowed = chunkingAllowed;
+	}
+	
+	/**
+	 * Method turns on chunked transfer coding of body whose length isn't known when
+	 * header is generated. Client can then tell complete body from one that was cut
+	 * off, because terminating chunk is sent only by {@link #finish()}.
+	 */
+	void enableChunking() {
+		checkHeaderGenerated();
+		chunkedBody = true;
+	}
+	
+	/**
+	 * Method sets caching policies that are applied when header is generated.
+	 * Policy isn't applied if {@code Cache-Control} header has been added explicitly.
+	 * 
+	 * @param cachePolicies    caching policies
+	 * @param urlPath          requested URL path
+	 * @param mimeTypePolicies {@link #mimeTypePolicies}
+	 */
+	void setCachePolicies(CachePolicies cachePolicies, String urlPath, boolean mimeTypePolicies) {
+		checkHeaderGenerated();
+		this.cachePolicies = cachePolicies;
+		this.urlPath = urlPath;
+		this.mimeTypePolicies = mimeTypePolicies;
+	}
+	
+	/**
+	 * Method discards response that hasn't reached the output stream yet, so
+	 * that different response can be sent instead. Response can be discarded if
+	 * header hasn't been generated or if body is buffered or held back.
+	 * 
+	 * @return {@code true} if response was discarded, {@code false} if part of it
+	 *         has already been written to the output stream
+	 */
+	boolean discardResponse() {
+		if (headerGenerated && bodyBuffer == null && pendingBody == null)
+			return false;
+		bodyBuffer = null;
+		bodyHash = null;
+		pendingBody = null;
+		return true;
+	}
+	
+	/**
+	 * Method finishes response. Buffered or held back response is sent to the output stream,
+	 * compressed and chunked body is terminated, and output stream is flushed.
+	 * Response of cancelled request isn't finished, so that client sees it's incomplete.
+	 * 
+	 * @throws IOException if writing response fails
+	 * @throws RequestCancelledException if request has been cancelled
+	 */
+	void finish() throws IOException {
+		checkCancelled();
+		try {
+			finishResponse();
+		} catch (IOException ex) {
+			throw disconnected(ex);
+		}
+	}
+	
+	/**
+	 * Method sends buffered or held back response and terminates compressed and chunked body.
+	 * 
+	 * @throws IOException if writing response fails
+	 */
+	private void finishResponse() throws IOException {
+		if (bodyBuffer != null) {
+			finishBuffered();
+		} else if (pendingBody != null) {
+			// Body is smaller than minimum compressed size
+			ByteArrayOutputStream body = pendingBody;
+			pendingBody = null;
+			contentLength = (long) body.size();
+			writeHeader();
+			body.writeTo(outputStream);
+		} else if (gzipStream != null) {
+			try {
+				gzipStream.finish();
+			} finally {
+				compression.release(deflater);
+				gzipStream = null;
+				deflater = null;
+			}
+			if (chunkedStream != null) {
+				chunkedStream.finish();
+			}
+		} else if (chunkedStream != null) {
+			chunkedStream.finish();
+		}
+		outputStream.flush();
+	}
+	
+	/**
+	 * Method sends buffered response. If content entity tag is turned on, response carries
+	 * entity tag computed from body's hash, or {@code 304 Not Modified} response is sent
+	 * if client's entity tag matches it.
+	 * 
+	 * @throws IOException if writing response fails
+	 */
+	private void finishBuffered() throws IOException {
+		ByteArrayOutputStream body = bodyBuffer;
+		bodyBuffer = null;
+		// Nothing has been written
+		if (!headerGenerated)
+			return;
+		
+		boolean compress = shouldCompress() && body.size() >= compression.getMinSize();
+		if (statusCode == 200 && bodyHash != null) {
+			// Compressed representation needs its own entity tag
+			String hash = Long.toHexString(bodyHash.getValue());
+			String etag = EntityTag.strong(compress ? hash + "-gz" : hash);
+			headers.put("ETag", etag);
+			if (ifNoneMatch != null && EntityTag.matchesAny(ifNoneMatch, etag)) {
+				statusCode = 304;
+				statusText = "Not Modified";
+				contentLength = null;
+				writeHeader();
+				return;
+			}
+		}
+		if (compress) {
+			ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.size() / 2);
+			Deflater deflater = compression.acquire();
+			try (PooledGzipOutputStream gzip = new PooledGzipOutputStream(compressed, deflater,
+					GzipCompression.BUFFER_SIZE)) {
+				body.writeTo(gzip);
+			} finally {
+				compression.release(deflater);
+			}
+			headers.put("Content-Encoding", "gzip");
+			body = compressed;
+		}
+		contentLength = (long) body.size();
+		writeHeader();
+		body.writeTo(outputStream);
+	}
+	
 	/**
 	 * Method adds given {@code cookie} to the list of cookies.
 	 * 
@@ -309,6 +690,27 @@ public class RequestContext {
 			throw new RuntimeException("You must not edit properties after header has been generated");	
 	}
 
+	/**
+	 * Method throws {@link RequestCancelledException} if request has been cancelled,
+	 * so that worker stops producing response nobody will receive.
+	 * 
+	 * @throws RequestCancelledException if request has been cancelled
+	 */
+	private void checkCancelled() {
+		cancellationToken.throwIfCancelled();
+	}
+	
+	/**
+	 * Method cancels request because writing to client's connection failed.
+	 * 
+	 * @param ex     exception thrown while writing
+	 * @return       given exception
+	 */
+	private IOException disconnected(IOException ex) {
+		cancellationToken.cancel("Client disconnected");
+		return ex;
+	}
+	
 	/**
 	 * Method writes given {@code data} to the output stream.
 	 * 
@@ -328,12 +730,17 @@ public class RequestContext {
 	 * @throws IOException if writing text fails
 	 */
 	public RequestContext write(String text) throws IOException {
-		if (!headerGenerated) {
-			generateHeader();
+		checkCancelled();
+		try {
+			if (!headerGenerated) {
+				generateHeader();
+			}
+			byte[] data = text.getBytes(charset);
+			writeBody(data, 0, data.length);
+			return this;
+		} catch (IOException ex) {
+			throw disconnected(ex);
 		}
-		outputStream.write(text.getBytes(charset));
-		outputStream.flush();
-		return this;
 	}
 	
 	/**
@@ -346,12 +753,192 @@ public class RequestContext {
 	 * @throws IOException
 	 */
 	public RequestContext write(byte[] data, int offset, int len) throws IOException {
-		if (!headerGenerated) {
-			generateHeader();
+		checkCancelled();
+		try {
+			if (!headerGenerated) {
+				generateHeader();
+			}
+			writeBody(data, offset, len);
+			return this;
+		} catch (IOException ex) {
+			throw disconnected(ex);
+		}
+	}
+	
+	/**
+	 * Method writes remaining bytes of given {@code data} to the output stream.
+	 * If response is written to the channel, buffer isn't copied, so its content
+	 * must not change until response is finished.
+	 * 
+	 * @param data         buffer whose remaining bytes are written
+	 * @return             this object
+	 * @throws IOException if writing data fails
+	 */
+	public RequestContext write(ByteBuffer data) throws IOException {
+		checkCancelled();
+		try {
+			if (!headerGenerated) {
+				generateHeader();
+			}
+			if (gatheringStream != null && bodyStream == gatheringStream && bodyBuffer == null && pendingBody == null) {
+				gatheringStream.write(data);
+				return this;
+			}
+		
+			ByteBuffer source = data.duplicate();
+			if (source.hasArray()) {
+				writeBody(source.array(), source.arrayOffset() + source.position(), source.remaining());
+				return this;
+			}
+			byte[] chunk = new byte[Math.min(source.remaining(), 8192)];
+			while (source.hasRemaining()) {
+				int length = Math.min(chunk.length, source.remaining());
+				source.get(chunk, 0, length);
+				writeBody(chunk, 0, length);
+			}
+			return this;
+		} catch (IOException ex) {
+			throw disconnected(ex);
 		}
-		outputStream.write(data, offset, len);
-		outputStream.flush();
-		return this;
+	}
+	
+	/**
+	 * Method writes {@code count} bytes of given {@code file} starting from {@code position}
+	 * to the output stream. If client connection's channel is known, large files are
+	 * transferred directly from file to the channel, and small ones are written together with header.
+	 * 
+	 * @param file         file that is written
+	 * @param position     position of first written byte
+	 * @param count        number of bytes that are written
+	 * @return             this object
+	 * @throws IOException if writing file fails
+	 */
+	public RequestContext write(FileChannel file, long position, long count) throws IOException {
+		checkCancelled();
+		try {
+			if (!headerGenerated) {
+				generateHeader();
+			}
+			long end = position + count;
+			if (outputChannel != null && bodyStream == outputStream && bodyBuffer == null && pendingBody == null
+					&& (gatheringStream == null || count > TRANSFER_THRESHOLD)) {
+				outputStream.flush();
+				while (position < end) {
+					long transferred = file.transferTo(position, end - position, outputChannel);
+					if (transferred <= 0)
+						throw new IOException("File ended before all bytes were written");
+					position += transferred;
+				}
+				return this;
+			}
+		
+			ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(count, 64 * 1024));
+			while (position < end) {
+				buffer.clear();
+				buffer.limit((int) Math.min(buffer.capacity(), end - position));
+				int read = file.read(buffer, position);
+				if (read < 0)
+					throw new IOException("File ended before all bytes were written");
+				writeBody(buffer.array(), 0, read);
+				position += read;
+			}
+			return this;
+		} catch (IOException ex) {
+			throw disconnected(ex);
+		}
+	}
+	
+	/**
+	 * Method writes given part of response body to the buffer if response is buffered,
+	 * otherwise to the body stream.
+	 * 
+	 * @param data         array that contains body
+	 * @param offset       position of first written byte
+	 * @param len          number of written bytes
+	 * @throws IOException if writing fails
+	 */
+	private void writeBody(byte[] data, int offset, int len) throws IOException {
+		if (bodyBuffer != null) {
+			bodyBuffer.write(data, offset, len);
+			if (bodyHash != null) {
+				bodyHash.update(data, offset, len);
+			}
+			return;
+		}
+		if (pendingBody != null) {
+			pendingBody.write(data, offset, len);
+			if (pendingBody.size() >= compression.getMinSize()) {
+				ByteArrayOutputStream body = pendingBody;
+				pendingBody = null;
+				startCompressedBody();
+				body.writeTo(bodyStream);
+			}
+			return;
+		}
+		bodyStream.write(data, offset, len);
+		// Compressor and gathering stream decide themselves when they have enough data to write
+		if (gzipStream == null && gatheringStream == null) {
+			bodyStream.flush();
+		}
+	}
+	
+	/**
+	 * Method checks if response body should be compressed regardless of its length.
+	 * 
+	 * @return {@code true} if response body should be compressed, otherwise {@code false}
+	 */
+	private boolean shouldCompress() {
+		return compression != null && acceptsGzip && statusCode == 200
+				&& !headers.containsKey("Content-Encoding") && GzipCompression.isCompressible(mimeType);
+	}
+	
+	/**
+	 * Method adds caching headers of policy that applies to the response.
+	 * Only successful and not modified responses are cached. Response that
+	 * sets cookie gets private policy, so shared caches don't store session.
+	 */
+	private void applyCachePolicy() {
+		if (cachePolicies == null || headers.containsKey("Cache-Control"))
+			return;
+		if (statusCode != 200 && statusCode != 206 && statusCode != 304)
+			return;
+		CachePolicies.CachePolicy policy = cachePolicies.find(urlPath, mimeTypePolicies ? mimeType : null);
+		if (policy == null)
+			return;
+		if (!outputCookies.isEmpty()) {
+			// HTTP/1.0 caches ignore Cache-Control, so Expires is left out
+			headers.put("Cache-Control", policy.getPrivateCacheControl());
+			return;
+		}
+		headers.put("Cache-Control", policy.getCacheControl());
+		String expires = policy.getExpires(System.currentTimeMillis());
+		if (expires != null) {
+			headers.put("Expires", expires);
+		}
+	}
+	
+	/**
+	 * Method writes header of compressed response and sets up compressing body stream.
+	 * 
+	 * @throws IOException if writing header fails
+	 */
+	private void startCompressedBody() throws IOException {
+		contentLength = null;
+		headers.put("Content-Encoding", "gzip");
+		// Compressed bytes differ from identity ones, so strong tag would be wrong
+		String etag = headers.get("ETag");
+		if (etag != null && !etag.startsWith("W/")) {
+			headers.put("ETag", "W/" + etag);
+		}
+		OutputStream target = outputStream;
+		// HTTP/1.0 client reads body until connection is closed
+		if (chunkingAllowed) {
+			headers.put("Transfer-Encoding", "chunked");
+			target = chunkedStream = new ChunkedOutputStream(outputStream);
+		}
+		writeHeader();
+		deflater = compression.acquire();
+		bodyStream = gzipStream = new PooledGzipOutputStream(target, deflater, GzipCompression.BUFFER_SIZE);
 	}
 	
 	/**
@@ -364,36 +951,79 @@ public class RequestContext {
 	}
 	
 	/**
-	 * Method generates and writes request header to the output stream.
+	 * Method generates request header and writes it to the output stream.
+	 * If response is buffered, header is written when response is finished.
+	 * If response is compressed, header is written when it's known that
+	 * body is large enough to be compressed.
 	 * 
 	 * @throws IOException if writing header fails
 	 */
 	private void generateHeader() throws IOException {
-		charset = Charset.forName(encoding);
-		
-		StringBuilder headerBuilder = new StringBuilder();
-		headerBuilder.append("HTTP/1.1 " + statusCode + " " + statusText + "\r\n");
+		headerGenerated = true;
+		applyCachePolicy();
+		// Caches must not serve compressed representation to clients that don't accept it
+		if (compression != null && statusCode == 200 && GzipCompression.isCompressible(mimeType)) {
+			headers.put("Vary", "Accept-Encoding");
+		}
+		if (bodyBuffer != null)
+			return;
+		if (shouldCompress()) {
+			if (contentLength == null) {
+				pendingBody = new ByteArrayOutputStream(compression.getMinSize());
+			} else if (contentLength >= compression.getMinSize()) {
+				startCompressedBody();
+			} else {
+				writeHeader();
+			}
+			return;
+		}
+		if (chunkedBody && contentLength == null && statusCode != 304) {
+			headers.put("Transfer-Encoding", "chunked");
+			bodyStream = chunkedStream = new ChunkedOutputStream(outputStream);
+		}
+		writeHeader();
+	}
+	
+	/**
+	 * Method writes request header to the output stream.
+	 * 
+	 * @throws IOException if writing header fails
+	 */
+	private void writeHeader() throws IOException {
+		HeaderWriter writer = headerWriter;
+		writer.reset();
+		writer.statusLine(statusCode, statusText).date();
 		if (contentLength != null) {
-			headerBuilder.append("Content-Length: " + contentLength + "\r\n");
+			writer.header(HeaderWriter.CONTENT_LENGTH, contentLength);
+		}
+		// Not modified response carries no representation
+		if (statusCode != 304) {
+			writer.write(HeaderWriter.CONTENT_TYPE).writeText(mimeType);
+			if (mimeType.startsWith("text/")) {
+				writer.writeText("; charset=").writeText(charset.toString());
+			}
+			writer.endLine();
 		}
-		headerBuilder.append("Content-Type: " + mimeType);
-		headerBuilder.append(mimeType.startsWith("text/") ? "; charset=" + charset.toString() : "");
-		headerBuilder.append("\r\n");
+		headers.forEach(writer::header);
 		
-		if (!outputCookies.isEmpty()) {
-			outputCookies.forEach(c -> {
-				headerBuilder.append("Set-Cookie: " + c.name + "=\"" + c.value + "\"");
-				headerBuilder.append(c.domain == null ? "" : "; Domain=" + c.domain);
-				headerBuilder.append(c.path == null ? "" : "; Path=" + c.path);
-				headerBuilder.append(c.maxAge == null ? "" : "; Max-Age=" + c.maxAge);
-				headerBuilder.append("; HttpOnly");
-				headerBuilder.append("\r\n");
-			});
+		for (RCCookie c : outputCookies) {
+			writer.write(HeaderWriter.SET_COOKIE).writeText(c.name).writeText("=\"").writeText(c.value).writeByte('"');
+			if (c.domain != null) {
+				writer.writeText("; Domain=").writeText(c.domain);
+			}
+			if (c.path != null) {
+				writer.writeText("; Path=").writeText(c.path);
+			}
+			if (c.maxAge != null) {
+				writer.writeText("; Max-Age=").writeNumber(c.maxAge);
+			}
+			writer.writeText("; HttpOnly").endLine();
+		}
+		writer.endLine();
+		writer.writeTo(outputStream);
+		if (bodyBuffer == null && gatheringStream == null) {
+			outputStream.flush();
 		}
-		headerBuilder.append("\r\n");
-		outputStream.write(headerBuilder.toString().getBytes(charset));
-		outputStream.flush();
-		headerGenerated = true;
 	}
 
 	/**
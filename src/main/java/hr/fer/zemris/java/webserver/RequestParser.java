@@ -0,0 +1,307 @@
+package hr.fer.zemris.java.webserver;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class contains methods used for parsing client's HTTP request.
+ *
+ * @author Ante Gazibaric
+ * @version 1.0
+ *
+ */
+public class RequestParser {
+
+	/**
+	 * Mime type used when requested path has no known extension.
+	 */
+	public static final String DEFAULT_MIME_TYPE = "application/octet-stream";
+	/**
+	 * State of request reader after empty line that ends request has been read.
+	 */
+	private static final int END_STATE = 5;
+
+	/**
+	 * Private constructor, class contains only static methods.
+	 */
+	private RequestParser() {
+	}
+
+	/**
+	 * Method reads client request from given input stream {@code istream}.
+	 *
+	 * @param istream      clinet's input stream
+	 * @return             clinet's request list of lines
+	 * @throws IOException if reading client request fails
+	 */
+	public static List<String> readRequest(InputStream istream) throws IOException {
+		byte[] requestBytes = getRequestByteArray(istream);
+		if (requestBytes == null)
+			return new ArrayList<String>();
+		List<String> lines = new ArrayList<String>();
+		splitLines(requestBytes, requestBytes.length, lines);
+		return lines;
+	}
+
+	/**
+	 * Method reads client request from given channel into given buffer.
+	 * Request is read in as few reads as possible, so bytes that follow
+	 * request may also be read into buffer.
+	 *
+	 * @param channel      client's channel
+	 * @param buffer       buffer into which request is read, its capacity limits request size
+	 * @return             client's request list of lines, empty if channel ended before
+	 *                     request was complete or if request doesn't fit into buffer
+	 * @throws IOException if reading client request fails
+	 */
+	public static List<String> readRequest(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+		List<String> lines = new ArrayList<String>();
+		readRequest(channel, buffer, lines);
+		return lines;
+	}
+
+	/**
+	 * Method reads client request from given channel into given buffer and adds
+	 * its lines to given list, so that caller can reuse both buffer and list.
+	 * Request is read in as few reads as possible, so bytes that follow
+	 * request may also be read into buffer.
+	 *
+	 * @param channel      client's channel
+	 * @param buffer       buffer into which request is read, its capacity limits request size
+	 * @param lines        list to which request lines are added, folded header lines are joined
+	 * @return             {@code true} if request was read, {@code false} if channel ended before
+	 *                     request was complete or if request doesn't fit into buffer
+	 * @throws IOException if reading client request fails
+	 */
+	public static boolean readRequest(ReadableByteChannel channel, ByteBuffer buffer, List<String> lines)
+			throws IOException {
+		buffer.clear();
+		int state = 0;
+		int scanned = 0;
+		while (state != END_STATE) {
+			if (!buffer.hasRemaining() || channel.read(buffer) < 0)
+				return false;
+			for (; scanned < buffer.position() && state != END_STATE; scanned++) {
+				state = nextState(state, buffer.get(scanned));
+			}
+		}
+
+		byte[] requestBytes = new byte[scanned];
+		int length = 0;
+		for (int i = 0; i < scanned; i++) {
+			byte b = buffer.get(i);
+			if (b != 13) {
+				requestBytes[length++] = b;
+			}
+		}
+		splitLines(requestBytes, length, lines);
+		return true;
+	}
+
+	/**
+	 * Method splits request into lines, joining folded header lines.
+	 *
+	 * @param request request without carriage returns
+	 * @param length  number of request bytes
+	 * @param lines   list to which lines are added
+	 */
+	private static void splitLines(byte[] request, int length, List<String> lines) {
+		int start = 0;
+		while (start < length) {
+			int end = start;
+			while (end < length && request[end] != '\n') {
+				end++;
+			}
+			if (end == start)
+				break;
+			String line = new String(request, start, end - start, StandardCharsets.US_ASCII);
+			byte c = request[start];
+			if ((c == 9 || c == 32) && !lines.isEmpty()) {
+				lines.set(lines.size() - 1, lines.get(lines.size() - 1) + line);
+			} else {
+				lines.add(line);
+			}
+			start = end + 1;
+		}
+	}
+
+	/**
+	 * Method checks if client request is valid and returns its content in byte array.
+	 *
+	 * @param istream      client input stream
+	 * @return             byte array that represents client's request or {@code null}
+	 *                     if stream ended before request was complete
+	 * @throws IOException if reading client request fails
+	 */
+	public static byte[] getRequestByteArray(InputStream istream) throws IOException {
+		ByteArrayOutputStream bos = new ByteArrayOutputStream();
+		int state = 0;
+		while (state != END_STATE) {
+			int b = istream.read();
+			if (b == -1)
+				return null;
+			if (b != 13) {
+				bos.write(b);
+			}
+			state = nextState(state, b);
+		}
+		return bos.toByteArray();
+	}
+
+	/**
+	 * Method returns state of request reader after given byte has been read.
+	 * Reader is in end state when it has read empty line.
+	 *
+	 * @param state current state
+	 * @param b     read byte
+	 * @return      next state
+	 */
+	private static int nextState(int state, int b) {
+		switch (state) {
+			case 0:
+				if(b==13) { return 1; } else if(b==10) return 4;
+				return 0;
+			case 1:
+				return b==10 ? 2 : 0;
+			case 2:
+				return b==13 ? 3 : 0;
+			case 3:
+				return b==10 ? END_STATE : 0;
+			case 4:
+				return b==10 ? END_STATE : 0;
+			default:
+				return state;
+		}
+	}
+
+	/**
+	 * Method parses client's parameters from given {@code paramString}
+	 * and stores them in given map {@code params}.
+	 *
+	 * @param paramString client's request parameters
+	 * @param params      map where parsed parameters are stored
+	 */
+	public static void parseParameters(String paramString, Map<String, String> params) {
+		if (paramString.isEmpty())
+			return;
+
+		String[] pairs = paramString.split("&");
+		for (String pair : pairs) {
+			String[] pairParts = pair.split("=");
+			try {
+				params.put(pairParts[0], pairParts[1]);
+			} catch (ArrayIndexOutOfBoundsException ex) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Method parses client request and returns requested host if it's given.
+	 * Otherwise it returns given {@code defaultHost}.
+	 *
+	 * @param request     client request
+	 * @param defaultHost host that is returned if request doesn't specify one
+	 * @return            requested host
+	 */
+	public static String parseHost(List<String> request, String defaultHost) {
+		for (String header : request) {
+			if (header.contains("Host:")) {
+				int length = "Host:".length();
+				int index = header.indexOf("Host:");
+				String host = header.substring(index + length).trim();
+				if (host.contains(":")) {
+					host = host.substring(0, host.indexOf(":")).trim();
+				}
+				return host;
+			}
+		}
+		return defaultHost;
+	}
+
+	/**
+	 * Method returns value of request header of given {@code name}.
+	 * Header names are compared case insensitively.
+	 *
+	 * @param request client request
+	 * @param name    name of header
+	 * @return        value of header or {@code null} if request doesn't contain it
+	 */
+	public static String getHeader(List<String> request, String name) {
+		// First line is request line
+		for (int i = 1, n = request.size(); i < n; i++) {
+			String header = request.get(i);
+			if (header.length() > name.length() && header.charAt(name.length()) == ':'
+					&& header.regionMatches(true, 0, name, 0, name.length())) {
+				return header.substring(name.length() + 1).trim();
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Method normalizes given URL path: empty and '.' segments are removed and
+	 * '..' segments remove segments before them. Trailing '/' is kept.
+	 *
+	 * @param urlPath requested URL path
+	 * @return        normalized path or {@code null} if path doesn't start with '/'
+	 *                or leads outside of root
+	 */
+	public static String normalizePath(String urlPath) {
+		if (urlPath.isEmpty() || urlPath.charAt(0) != '/')
+			return null;
+		if (urlPath.indexOf("//") < 0 && urlPath.indexOf("/.") < 0)
+			return urlPath;
+
+		List<String> segments = new ArrayList<>();
+		int length = urlPath.length();
+		int start = 1;
+		while (start <= length) {
+			int end = urlPath.indexOf('/', start);
+			if (end < 0) {
+				end = length;
+			}
+			String segment = urlPath.substring(start, end);
+			if (segment.equals("..")) {
+				if (segments.isEmpty())
+					return null;
+				segments.remove(segments.size() - 1);
+			} else if (!segment.isEmpty() && !segment.equals(".")) {
+				segments.add(segment);
+			}
+			start = end + 1;
+		}
+		StringBuilder sb = new StringBuilder(length);
+		for (String segment : segments) {
+			sb.append('/').append(segment);
+		}
+		if (sb.length() == 0 || urlPath.endsWith("/")) {
+			sb.append('/');
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Method returns mime type of requested URL path.
+	 *
+	 * @param urlPath   requested URL path
+	 * @param mimeTypes map of known extensions and their mime types
+	 * @return          mime type of requested URL path
+	 */
+	public static String resolveMimeType(String urlPath, Map<String, String> mimeTypes) {
+		for (Map.Entry<String, String> type : mimeTypes.entrySet()) {
+			if(urlPath.endsWith(type.getKey())) {
+				return type.getValue();
+			}
+		}
+		return DEFAULT_MIME_TYPE;
+	}
+
+}
@@ -0,0 +1,226 @@
+package hr.fer.zemris.java.webserver;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Watchdog that tracks requests that are currently being processed.
+ * Its checker thread periodically looks for requests that are running longer
+ * than configured budget. Every such request is reported once: worker thread's
+ * stack trace is logged together with requested route and stuck request
+ * is counted in {@link ServerMetrics}.
+ *
+ * @author Ante Gazibaric
+ * @version 1.0
+ *
+ */
+public class RequestWatchdog {
+
+	/**
+	 * Number of requests that exceeded budget.
+	 */
+	public static final String STUCK = "watchdog.stuck";
+	/**
+	 * Number of stuck requests that eventually finished.
+	 */
+	public static final String STUCK_FINISHED = "watchdog.stuckFinished";
+	/**
+	 * Number of requests that are currently stuck.
+	 */
+	public static final String STUCK_NOW = "watchdog.stuckNow";
+	/**
+	 * Number of requests that are currently processed.
+	 */
+	public static final String IN_FLIGHT = "watchdog.inFlight";
+
+	/**
+	 * Requests that are currently processed.
+	 */
+	private Map<InFlightRequest, Boolean> inFlight = new ConcurrentHashMap<>();
+	/**
+	 * Budget in milliseconds after which request is considered stuck.
+	 */
+	private long budget;
+	/**
+	 * Time in milliseconds between two checks.
+	 */
+	private long period;
+	/**
+	 * Metrics where stuck requests are reported.
+	 */
+	private ServerMetrics metrics;
+	/**
+	 * Checker thread.
+	 */
+	private Thread checkerThread;
+
+	/**
+	 * Constructor that creates new {@link RequestWatchdog} object.
+	 *
+	 * @param budget  {@link #budget}
+	 * @param period  {@link #period}
+	 * @param metrics {@link #metrics}
+	 */
+	public RequestWatchdog(long budget, long period, ServerMetrics metrics) {
+		if (budget <= 0 || period <= 0)
+			throw new IllegalArgumentException("Watchdog budget and period must be positive");
+		this.budget = budget;
+		this.period = period;
+		this.metrics = metrics;
+		metrics.registerGauge(IN_FLIGHT, () -> inFlight.size());
+		metrics.registerGauge(STUCK_NOW, () -> inFlight.keySet().stream().filter(r -> r.reported).count());
+	}
+
+	/**
+	 * Method starts checker thread if it already hasn't been started.
+	 */
+	public synchronized void start() {
+		if (checkerThread != null)
+			return;
+		checkerThread = new Thread(() -> {
+			while (true) {
+				check(System.nanoTime());
+				try {
+					Thread.sleep(period);
+				} catch (InterruptedException ex) {
+					return;
+				}
+			}
+		}, "request-watchdog");
+		checkerThread.setDaemon(true);
+		checkerThread.start();
+	}
+
+	/**
+	 * Method stops checker thread.
+	 */
+	public synchronized void stop() {
+		if (checkerThread != null) {
+			checkerThread.interrupt();
+			checkerThread = null;
+		}
+	}
+
+	/**
+	 * Method starts tracking request processed by current thread.
+	 *
+	 * @return handle of tracked request that must be passed to {@link #end(InFlightRequest)}
+	 */
+	public InFlightRequest begin() {
+		InFlightRequest request = new InFlightRequest(Thread.currentThread(), System.nanoTime());
+		inFlight.put(request, Boolean.TRUE);
+		return request;
+	}
+
+	/**
+	 * Method stops tracking given {@code request}.
+	 *
+	 * @param request request that finished
+	 */
+	public void end(InFlightRequest request) {
+		inFlight.remove(request);
+		if (request.reported) {
+			metrics.increment(STUCK_FINISHED);
+			System.err.println("Stuck request finished after " + elapsedMillis(request, System.nanoTime())
+					+ " ms: " + request.route);
+		}
+	}
+
+	/**
+	 * Method reports every request that exceeded budget and hasn't been reported yet.
+	 *
+	 * @param now current time in nanoseconds
+	 */
+	private void check(long now) {
+		for (InFlightRequest request : inFlight.keySet()) {
+			if (request.reported || elapsedMillis(request, now) < budget)
+				continue;
+
+			StackTraceElement[] stackTrace = request.thread.getStackTrace();
+			// Request could have finished while stack was sampled
+			if (!inFlight.containsKey(request))
+				continue;
+			request.reported = true;
+			metrics.increment(STUCK);
+			report(request, now, stackTrace);
+		}
+	}
+
+	/**
+	 * Method logs stuck request with its stack trace.
+	 *
+	 * @param request    stuck request
+	 * @param now        current time in nanoseconds
+	 * @param stackTrace stack trace of request's worker thread
+	 */
+	private void report(InFlightRequest request, long now, StackTraceElement[] stackTrace) {
+		StringBuilder sb = new StringBuilder();
+		sb.append("Request is running for ").append(elapsedMillis(request, now)).append(" ms (budget ")
+				.append(budget).append(" ms): ").append(request.route)
+				.append(" on thread ").append(request.thread.getName()).append("\n");
+		for (StackTraceElement element : stackTrace) {
+			sb.append("\tat ").append(element).append("\n");
+		}
+		System.err.print(sb.toString());
+	}
+
+	/**
+	 * Method returns number of milliseconds that passed since given {@code request} started.
+	 *
+	 * @param request tracked request
+	 * @param now     current time in nanoseconds
+	 * @return        number of milliseconds since request started
+	 */
+	private static long elapsedMillis(InFlightRequest request, long now) {
+		return (now - request.startTime) / 1_000_000;
+	}
+
+	/**
+	 * Class represents request that is tracked by watchdog.
+	 *
+	 * @author Ante Gazibaric
+	 * @version 1.0
+	 *
+	 */
+	public static class InFlightRequest {
+
+		/**
+		 * Thread that processes request.
+		 */
+		private Thread thread;
+		/**
+		 * Time in nanoseconds when request processing started.
+		 */
+		private long startTime;
+		/**
+		 * Requested route.
+		 */
+		private volatile String route = "<unknown>";
+		/**
+		 * Flag that shows if request has been reported as stuck.
+		 */
+		private volatile boolean reported;
+
+		/**
+		 * Constructor that creates new {@link InFlightRequest} object.
+		 *
+		 * @param thread    {@link #thread}
+		 * @param startTime {@link #startTime}
+		 */
+		private InFlightRequest(Thread thread, long startTime) {
+			this.thread = thread;
+			this.startTime = startTime;
+		}
+
+		/**
+		 * Method sets requested route.
+		 *
+		 * @param route requested route
+		 */
+		public void setRoute(String route) {
+			this.route = route;
+		}
+
+	}
+
+}
@@ -0,0 +1,113 @@
+package hr.fer.zemris.java.webserver;
+
+/**
+ * Route of {@link Router}. Route tells how request on matching URL path
+ * is served and which traffic class it belongs to.
+ *
+ * @author Ante Gazibaric
+ * @version 1.0
+ *
+ */
+public class Route {
+
+	/**
+	 * Ways in which request can be served.
+	 *
+	 * @author Ante Gazibaric
+	 * @version 1.0
+	 *
+	 */
+	public enum Type {
+		/**
+		 * Request is served by configured web worker.
+		 */
+		WORKER,
+		/**
+		 * Request is served by web worker whose class name is last segment of URL path.
+		 */
+		EXTENSION,
+		/**
+		 * Request is served by server's metrics.
+		 */
+		METRICS,
+		/**
+		 * Request is forbidden to clients, only dispatched requests are served from files.
+		 */
+		PRIVATE,
+		/**
+		 * Request is served from document root.
+		 */
+		FILE
+	}
+
+	/**
+	 * Pattern that route was added with.
+	 */
+	private String pattern;
+	/**
+	 * Way in which request is served.
+	 */
+	private Type type;
+	/**
+	 * Traffic class of request or {@code null} if it's determined by requested file.
+	 */
+	private TrafficClass trafficClass;
+	/**
+	 * Worker that serves request, {@code null} unless route type is {@link Type#WORKER}.
+	 */
+	private AsyncWebWorker worker;
+
+	/**
+	 * Constructor that creates new {@link Route} object.
+	 *
+	 * @param pattern      {@link #pattern}
+	 * @param type         {@link #type}
+	 * @param trafficClass {@link #trafficClass}
+	 * @param worker       {@link #worker}
+	 */
+	public Route(String pattern, Type type, TrafficClass trafficClass, AsyncWebWorker worker) {
+		if (type == Type.WORKER && worker == null)
+			throw new IllegalArgumentException("Worker route needs worker");
+		this.pattern = pattern;
+		this.type = type;
+		this.trafficClass = trafficClass;
+		this.worker = worker;
+	}
+
+	/**
+	 * Method returns pattern that route was added with.
+	 *
+	 * @return pattern of route
+	 */
+	public String getPattern() {
+		return pattern;
+	}
+
+	/**
+	 * Method returns way in which request is served.
+	 *
+	 * @return type of route
+	 */
+	public Type getType() {
+		return type;
+	}
+
+	/**
+	 * Method returns traffic class of request.
+	 *
+	 * @return traffic class or {@code null} if it's determined by requested file
+	 */
+	public TrafficClass getTrafficClass() {
+		return trafficClass;
+	}
+
+	/**
+	 * Method returns worker that serves request.
+	 *
+	 * @return worker or {@code null} unless route type is {@link Type#WORKER}
+	 */
+	public AsyncWebWorker getWorker() {
+		return worker;
+	}
+
+}
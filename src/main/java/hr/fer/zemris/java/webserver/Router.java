@@ -0,0 +1,266 @@
+package hr.fer.zemris.java.webserver;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Router that finds {@link Route} of URL path in radix tree. Edges of the tree
+ * are labeled with parts of paths that routes share, so path is matched by walking
+ * it once, in time proportional to its length. Route pattern can be:
+ * <ul>
+ * <li>exact path, for example {@code /hello},</li>
+ * <li>prefix that ends with '*' and matches every path with given prefix,
+ * for example {@code /ext/*},</li>
+ * <li>path with parameters, which are whole segments in braces and match any
+ * non-empty segment, for example {@code /users/{id}/posts}.</li>
+ * </ul>
+ * Exact parts of patterns take precedence over parameters, and both take
+ * precedence over prefixes, so prefix route is used only if no other route
+ * matches whole path. Of two matching prefixes longer one wins.
+ *
+ * @author Ante Gazibaric
+ * @version 1.0
+ *
+ */
+public class Router {
+
+	/**
+	 * Root of the tree, which matches empty path.
+	 */
+	private Node root = new Node("");
+
+	/**
+	 * Method adds route with given pattern.
+	 *
+	 * @param pattern pattern of URL paths that route matches
+	 * @param route   route
+	 * @throws IllegalArgumentException if pattern is invalid or route with same pattern already exists
+	 */
+	public void add(String pattern, Route route) {
+		if (pattern.isEmpty() || pattern.charAt(0) != '/')
+			throw new IllegalArgumentException("Route pattern must start with '/': " + pattern);
+		boolean prefix = pattern.endsWith("*");
+		String path = prefix ? pattern.substring(0, pattern.length() - 1) : pattern;
+		if (path.indexOf('*') >= 0)
+			throw new IllegalArgumentException("'*' can only end route pattern: " + pattern);
+
+		Node node = root;
+		int position = 0;
+		while (position < path.length()) {
+			int open = path.indexOf('{', position);
+			int literalEnd = open < 0 ? path.length() : open;
+			if (path.lastIndexOf('}', literalEnd - 1) >= position)
+				throw new IllegalArgumentException("Unopened parameter in route pattern: " + pattern);
+			if (literalEnd > position) {
+				node = node.addLiteral(path.substring(position, literalEnd));
+			}
+			if (open < 0)
+				break;
+			int close = path.indexOf('}', open);
+			if (path.charAt(open - 1) != '/' || close < 0
+					|| close + 1 < path.length() && path.charAt(close + 1) != '/')
+				throw new IllegalArgumentException("Parameter must be whole segment of route pattern: " + pattern);
+			String name = path.substring(open + 1, close);
+			if (name.isEmpty() || name.indexOf('{') >= 0 || name.indexOf('/') >= 0)
+				throw new IllegalArgumentException("Invalid parameter name in route pattern: " + pattern);
+			node = node.addParameter(name);
+			position = close + 1;
+		}
+
+		if (prefix ? node.prefixRoute != null : node.route != null)
+			throw new IllegalArgumentException("Duplicate route pattern: " + pattern);
+		if (prefix) {
+			node.prefixRoute = route;
+		} else {
+			node.route = route;
+		}
+	}
+
+	/**
+	 * Method finds route of given URL path. Values of parameters
+	 * matched by route's pattern are put in given map.
+	 *
+	 * @param urlPath    URL path
+	 * @param parameters map where parameters are put, can be {@code null}
+	 * @return           route or {@code null} if no route matches path
+	 */
+	public Route find(String urlPath, Map<String, String> parameters) {
+		Route route = root.match(urlPath, 0, parameters, false);
+		return route != null ? route : root.match(urlPath, 0, parameters, true);
+	}
+
+	/**
+	 * Node of the radix tree.
+	 *
+	 * @author Ante Gazibaric
+	 * @version 1.0
+	 *
+	 */
+	private static class Node {
+
+		/**
+		 * Empty array of children.
+		 */
+		private static final Node[] NO_CHILDREN = new Node[0];
+
+		/**
+		 * Part of path on edge that leads to this node, empty for parameter nodes.
+		 */
+		private String label;
+		/**
+		 * First characters of children's labels, in order of children.
+		 */
+		private char[] firstChars = new char[0];
+		/**
+		 * Children whose labels start with different characters.
+		 */
+		private Node[] children = NO_CHILDREN;
+		/**
+		 * Child that matches parameter segment or {@code null}.
+		 */
+		private Node parameter;
+		/**
+		 * Name of parameter if this node is parameter node.
+		 */
+		private String parameterName;
+		/**
+		 * Route of path that ends in this node or {@code null}.
+		 */
+		private Route route;
+		/**
+		 * Route of paths that start with path that ends in this node or {@code null}.
+		 */
+		private Route prefixRoute;
+
+		/**
+		 * Constructor that creates new {@link Node} object.
+		 *
+		 * @param label {@link #label}
+		 */
+		Node(String label) {
+			this.label = label;
+		}
+
+		/**
+		 * Method adds path of given literal below this node,
+		 * splitting edges where literal diverges from them.
+		 *
+		 * @param literal part of route pattern without parameters
+		 * @return        node where literal ends
+		 */
+		Node addLiteral(String literal) {
+			Node node = this;
+			while (!literal.isEmpty()) {
+				int index = node.indexOf(literal.charAt(0));
+				if (index < 0) {
+					Node child = new Node(literal);
+					node.addChild(child);
+					return child;
+				}
+				Node child = node.children[index];
+				int common = 0;
+				int max = Math.min(child.label.length(), literal.length());
+				while (common < max && child.label.charAt(common) == literal.charAt(common)) {
+					common++;
+				}
+				if (common < child.label.length()) {
+					Node split = new Node(child.label.substring(0, common));
+					child.label = child.label.substring(common);
+					split.addChild(child);
+					node.children[index] = split;
+					child = split;
+				}
+				node = child;
+				literal = literal.substring(common);
+			}
+			return node;
+		}
+
+		/**
+		 * Method returns parameter child with given name, creating it if it doesn't exist.
+		 *
+		 * @param name name of parameter
+		 * @return     parameter node
+		 * @throws IllegalArgumentException if parameter on same position has different name
+		 */
+		Node addParameter(String name) {
+			if (parameter == null) {
+				parameter = new Node("");
+				parameter.parameterName = name;
+			} else if (!parameter.parameterName.equals(name))
+				throw new IllegalArgumentException("Parameters '" + parameter.parameterName + "' and '" + name
+						+ "' are on same position of route patterns");
+			return parameter;
+		}
+
+		/**
+		 * Method matches rest of given path, which starts at given position, below this node.
+		 *
+		 * @param path       URL path
+		 * @param position   position where unmatched part of path starts
+		 * @param parameters map where parameters are put, can be {@code null}
+		 * @param prefixes   flag that shows if prefix routes are matched too
+		 * @return           route or {@code null} if no route matches path
+		 */
+		Route match(String path, int position, Map<String, String> parameters, boolean prefixes) {
+			int length = path.length();
+			if (position == length && route != null)
+				return route;
+			if (position < length) {
+				int index = indexOf(path.charAt(position));
+				if (index >= 0) {
+					Node child = children[index];
+					if (path.startsWith(child.label, position)) {
+						Route found = child.match(path, position + child.label.length(), parameters, prefixes);
+						if (found != null)
+							return found;
+					}
+				}
+				if (parameter != null) {
+					int end = path.indexOf('/', position);
+					if (end < 0) {
+						end = length;
+					}
+					if (end > position) {
+						Route found = parameter.match(path, end, parameters, prefixes);
+						if (found != null) {
+							if (parameters != null) {
+								parameters.put(parameter.parameterName, path.substring(position, end));
+							}
+							return found;
+						}
+					}
+				}
+			}
+			return prefixes ? prefixRoute : null;
+		}
+
+		/**
+		 * Method returns index of child whose label starts with given character.
+		 *
+		 * @param c first character of label
+		 * @return  index of child or {@code -1} if there is no such child
+		 */
+		private int indexOf(char c) {
+			for (int i = 0; i < firstChars.length; i++) {
+				if (firstChars[i] == c)
+					return i;
+			}
+			return -1;
+		}
+
+		/**
+		 * Method adds given child.
+		 *
+		 * @param child child with non-empty label
+		 */
+		private void addChild(Node child) {
+			firstChars = Arrays.copyOf(firstChars, firstChars.length + 1);
+			children = Arrays.copyOf(children, children.length + 1);
+			firstChars[firstChars.length - 1] = child.label.charAt(0);
+			children[children.length - 1] = child;
+		}
+
+	}
+
+}
@@ -0,0 +1,90 @@
+package hr.fer.zemris.java.webserver;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import hr.fer.zemris.java.custom.scripting.nodes.DocumentNode;
+import hr.fer.zemris.java.custom.scripting.parser.SmartScriptParser;
+
+/**
+ * Cache of parsed smart scripts. Script is parsed again only when its file
+ * changes, so text of script's nodes is encoded once and reused by every execution.
+ *
+ * @author Ante Gazibaric
+ * @version 1.0
+ *
+ */
+public class ScriptCache {
+
+	/**
+	 * Parsed scripts.
+	 */
+	private Map<Path, CachedScript> cache = new ConcurrentHashMap<>();
+	/**
+	 * Cache of files' metadata.
+	 */
+	private FileInfoCache fileInfoCache;
+
+	/**
+	 * Constructor that creates new {@link ScriptCache} object.
+	 *
+	 * @param fileInfoCache {@link #fileInfoCache}
+	 */
+	public ScriptCache(FileInfoCache fileInfoCache) {
+		this.fileInfoCache = fileInfoCache;
+	}
+
+	/**
+	 * Method returns parsed script of given file.
+	 *
+	 * @param path         path of script file
+	 * @return             parsed script
+	 * @throws IOException if reading script fails
+	 */
+	public DocumentNode get(Path path) throws IOException {
+		FileInfo info = fileInfoCache.get(path);
+		CachedScript cached = cache.get(path);
+		if (cached != null && cached.info.isCurrent(info.getSize(), info.getLastModifiedMillis()))
+			return cached.document;
+
+		byte[] data = Files.readAllBytes(path);
+		DocumentNode document = new SmartScriptParser(new String(data)).getDocumentNode();
+		cache.put(path, new CachedScript(info, document));
+		return document;
+	}
+
+	/**
+	 * Class represents parsed script together with metadata of its file.
+	 *
+	 * @author Ante Gazibaric
+	 * @version 1.0
+	 *
+	 */
+	private static class CachedScript {
+
+		/**
+		 * Metadata of script file when it was parsed.
+		 */
+		private FileInfo info;
+		/**
+		 * Parsed script.
+		 */
+		private DocumentNode document;
+
+		/**
+		 * Constructor that creates new {@link CachedScript} object.
+		 *
+		 * @param info     {@link #info}
+		 * @param document {@link #document}
+		 */
+		private CachedScript(FileInfo info, DocumentNode document) {
+			this.info = info;
+			this.document = document;
+		}
+
+	}
+
+}
@@ -0,0 +1,93 @@
+package hr.fer.zemris.java.webserver;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Class represents server's metrics surface.
+ * It stores named counters that can be incremented from any thread
+ * and named gauges whose values are read only when snapshot is taken.
+ *
+ * @author Ante Gazibaric
+ * @version 1.0
+ *
+ */
+public class ServerMetrics {
+
+	/**
+	 * Map of counters.
+	 */
+	private Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+	/**
+	 * Map of gauges.
+	 */
+	private Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+
+	/**
+	 * Method increments counter of given {@code name} by one.
+	 *
+	 * @param name name of counter
+	 */
+	public void increment(String name) {
+		add(name, 1);
+	}
+
+	/**
+	 * Method adds given {@code value} to the counter of given {@code name}.
+	 *
+	 * @param name  name of counter
+	 * @param value value that is added
+	 */
+	public void add(String name, long value) {
+		counters.computeIfAbsent(name, n -> new LongAdder()).add(value);
+	}
+
+	/**
+	 * Method returns current value of counter of given {@code name}.
+	 *
+	 * @param name name of counter
+	 * @return     current value of counter or 0 if it doesn't exist
+	 */
+	public long getCounter(String name) {
+		LongAdder counter = counters.get(name);
+		return counter == null ? 0 : counter.sum();
+	}
+
+	/**
+	 * Method registers gauge of given {@code name}.
+	 *
+	 * @param name  name of gauge
+	 * @param gauge supplier of gauge's current value
+	 */
+	public void registerGauge(String name, LongSupplier gauge) {
+		gauges.put(name, gauge);
+	}
+
+	/**
+	 * Method returns snapshot of all counters and gauges sorted by their names.
+	 *
+	 * @return snapshot of all counters and gauges
+	 */
+	public Map<String, Long> snapshot() {
+		Map<String, Long> snapshot = new TreeMap<>();
+		counters.forEach((name, counter) -> snapshot.put(name, counter.sum()));
+		gauges.forEach((name, gauge) -> snapshot.put(name, gauge.getAsLong()));
+		return snapshot;
+	}
+
+	/**
+	 * Method returns text representation of metrics snapshot
+	 * where each metric is written in its own line as {@code name value}.
+	 *
+	 * @return text representation of metrics snapshot
+	 */
+	public String format() {
+		StringBuilder sb = new StringBuilder();
+		snapshot().forEach((name, value) -> sb.append(name).append(' ').append(value).append("\n"));
+		return sb.toString();
+	}
+
+}
@@ -25,6 +25,47 @@ public class ServerPropertiesKeys {
 	 * Worker threads key.
 	 */
 	public static final String THREADS = "server.workerThreads";
+	/**
+	 * Connection executor key.
+	 */
+	public static final String EXECUTOR = "server.executor";
+	/**
+	 * Admission queue length key.
+	 */
+	public static final String ADMISSION_MAX_QUEUE = "server.admission.maxQueue";
+	/**
+	 * Admission queue time key.
+	 */
+	public static final String ADMISSION_MAX_QUEUE_TIME = "server.admission.maxQueueTime";
+	/**
+	 * Admission target queue time key.
+	 */
+	public static final String ADMISSION_TARGET = "server.admission.target";
+	/**
+	 * Admission interval key.
+	 */
+	public static final String ADMISSION_INTERVAL = "server.admission.interval";
+	/**
+	 * Retry-After of rejected connections key.
+	 */
+	public static final String ADMISSION_RETRY_AFTER = "server.admission.retryAfter";
+	/**
+	 * Prefix of traffic classes' thread pool keys, followed by class name
+	 * and '.threads', '.maxThreads' or '.maxQueue'.
+	 */
+	public static final String BULKHEAD = "server.bulkhead";
+	/**
+	 * Adaptive pool minimum threads key.
+	 */
+	public static final String ADAPTIVE_MIN_THREADS = "server.adaptive.minThreads";
+	/**
+	 * Adaptive pool maximum threads key.
+	 */
+	public static final String ADAPTIVE_MAX_THREADS = "server.adaptive.maxThreads";
+	/**
+	 * Adaptive pool window key.
+	 */
+	public static final String ADAPTIVE_WINDOW = "server.adaptive.window";
 	/**
 	 * Document root key.
 	 */
@@ -41,6 +82,82 @@ public class ServerPropertiesKeys {
 	 * Server workers key.
 	 */
 	public static final String WORKERS = "server.workers";
+	/**
+	 * Metrics path key.
+	 */
+	public static final String METRICS_PATH = "server.metricsPath";
+	/**
+	 * Content entity tag routes key.
+	 */
+	public static final String CONTENT_ETAG = "server.contentETag";
+	/**
+	 * Request deadline key.
+	 */
+	public static final String REQUEST_TIMEOUT = "server.requestTimeout";
+	/**
+	 * Smart script maximum loop iterations key.
+	 */
+	public static final String SCRIPT_MAX_ITERATIONS = "server.script.maxIterations";
+	/**
+	 * Smart script maximum output size key.
+	 */
+	public static final String SCRIPT_MAX_OUTPUT = "server.script.maxOutput";
+	/**
+	 * Smart script maximum wall time key.
+	 */
+	public static final String SCRIPT_MAX_TIME = "server.script.maxTime";
+	/**
+	 * Smart script budgets config key.
+	 */
+	public static final String SCRIPT_BUDGETS = "server.script.budgets";
+	/**
+	 * Watchdog budget key.
+	 */
+	public static final String WATCHDOG_BUDGET = "server.watchdog.budget";
+	/**
+	 * Watchdog period key.
+	 */
+	public static final String WATCHDOG_PERIOD = "server.watchdog.period";
+	/**
+	 * Gzip compression level key.
+	 */
+	public static final String GZIP_LEVEL = "server.gzip.level";
+	/**
+	 * Gzip minimum response size key.
+	 */
+	public static final String GZIP_MIN_SIZE = "server.gzip.minSize";
+	/**
+	 * Directory of precompressed static files key.
+	 */
+	public static final String GZIP_PRECOMPRESSED = "server.gzip.precompressedDir";
+	/**
+	 * Cache config key.
+	 */
+	public static final String CACHE = "server.cacheConfig";
+	/**
+	 * Open file cache validity key.
+	 */
+	public static final String OPEN_FILE_CACHE_VALID = "server.openFileCache.valid";
+	/**
+	 * Open file cache maximum open files key.
+	 */
+	public static final String OPEN_FILE_CACHE_MAX_OPEN_FILES = "server.openFileCache.maxOpenFiles";
+	/**
+	 * Open file cache maximum content bytes key.
+	 */
+	public static final String OPEN_FILE_CACHE_MAX_CONTENT_BYTES = "server.openFileCache.maxContentBytes";
+	/**
+	 * Negative lookup cache size key.
+	 */
+	public static final String NEGATIVE_CACHE_MAX_ENTRIES = "server.negativeCache.maxEntries";
+	/**
+	 * Buffer pool memory limit key.
+	 */
+	public static final String BUFFERS_MAX_MEMORY = "server.buffers.maxMemory";
+	/**
+	 * Buffer leak detection key.
+	 */
+	public static final String BUFFERS_LEAK_DETECTION = "server.buffers.leakDetection";
 	
 	
 }
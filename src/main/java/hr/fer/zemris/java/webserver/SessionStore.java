@@ -0,0 +1,185 @@
+package hr.fer.zemris.java.webserver;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+import hr.fer.zemris.java.webserver.RequestContext.RCCookie;
+
+/**
+ * Class stores server's sessions. Sessions are identified by their SID
+ * that is sent to the client as a cookie.
+ *
+ * @author Ante Gazibaric
+ * @version 1.0
+ *
+ */
+public class SessionStore {
+
+	/**
+	 * Map of sessions.
+	 */
+	private Map<String, SessionMapEntry> sessions = new ConcurrentHashMap<>();
+	/**
+	 * Random object used for generating session SID.
+	 */
+	private volatile Random sessionRandom = new Random();
+	/**
+	 * Number of seconds that session cookies are valid.
+	 */
+	private int sessionTimeout;
+
+	/**
+	 * Constructor that creates new {@link SessionStore} object.
+	 *
+	 * @param sessionTimeout {@link #sessionTimeout}
+	 */
+	public SessionStore(int sessionTimeout) {
+		this.sessionTimeout = sessionTimeout;
+	}
+
+	/**
+	 * Method checks client's request for session cookie.
+	 * If request belongs to a valid session, session is prolonged.
+	 * Otherwise new session is created and its cookie is added to given {@code outputCookies}.
+	 *
+	 * @param request       client's request lines
+	 * @param host          requested host
+	 * @param outputCookies list of cookies that are sent to the client
+	 * @return              persistent parameters of request's session
+	 */
+	public Map<String, String> checkSession(List<String> request, String host, List<RCCookie> outputCookies) {
+		String sidCandidate = null;
+		Map<String, String> sessionEntryMap = new ConcurrentHashMap<>();
+		for (String header : request) {
+			if (header.startsWith("Cookie:")) {
+				int index = header.indexOf("Cookie:") + "Cookie:".length();
+				String[] cookies = header.substring(index).trim().split(";");
+
+				for (String cookie : cookies) {
+					String[] cookiePair = cookie.trim().split("=");
+					if (cookiePair.length != 2)
+						continue;
+					String name = cookiePair[0];
+					String value = unquote(cookiePair[1]);
+					sessionEntryMap.put(name, value);
+					if (name.toLowerCase().equals("sid")) {
+						sidCandidate = value;
+					}
+				}
+			}
+		}
+
+		if (sidCandidate == null) {
+			return addNewSession(host, sessionEntryMap, outputCookies);
+		}
+
+		SessionMapEntry entry = sessions.get(sidCandidate);
+		if (entry == null || !entry.host.equals(host)) {
+			return addNewSession(host, sessionEntryMap, outputCookies);
+		} else if (entry.validUntil < System.currentTimeMillis() / 1000) {
+			sessions.remove(sidCandidate);
+			return addNewSession(host, sessionEntryMap, outputCookies);
+		} else {
+			// If it's valid entry, update validUntil
+			entry.validUntil = sessionTimeout + System.currentTimeMillis() / 1000;
+			return entry.map;
+		}
+	}
+
+	/**
+	 * Method adds new session to the sessions map.
+	 *
+	 * @param host          session's host
+	 * @param map           map of parameters
+	 * @param outputCookies list of cookies where session's cookie is added
+	 * @return              persistent parameters of new session
+	 */
+	private Map<String, String> addNewSession(String host, Map<String, String> map, List<RCCookie> outputCookies) {
+		SessionMapEntry entry = new SessionMapEntry();
+		entry.host = host;
+		entry.sid = generateRandomSid();
+		entry.map = map;
+		entry.validUntil = sessionTimeout + System.currentTimeMillis() / 1000;
+		sessions.put(entry.sid, entry);
+		outputCookies.add(new RCCookie("sid", entry.sid, null, host, "/"));
+		return map;
+	}
+
+	/**
+	 * Method removes sessions whose time until they are valid has expired.
+	 */
+	public void removeExpired() {
+		long now = System.currentTimeMillis() / 1000;
+		sessions.entrySet().removeIf(e -> e.getValue().validUntil < now);
+	}
+
+	/**
+	 * Method returns number of stored sessions.
+	 *
+	 * @return number of stored sessions
+	 */
+	public int size() {
+		return sessions.size();
+	}
+
+	/**
+	 * Method removes quotes that surround given cookie {@code value}.
+	 *
+	 * @param value cookie value
+	 * @return      cookie value without quotes
+	 */
+	private static String unquote(String value) {
+		if (value.length() >= 2 && value.charAt(0) == '"' && value.charAt(value.length() - 1) == '"') {
+			return value.substring(1, value.length() - 1);
+		}
+		return value;
+	}
+
+	/**
+	 * Method generates random SID value that contains 20 uppercased letters.
+	 *
+	 * @return random SID value that contains 20 uppercased letters
+	 */
+	private String generateRandomSid() {
+		int leftLimit = 65; // 'A'
+		int rightLimit = 90; // 'Z'
+		int length = 20;
+		StringBuilder buffer = new StringBuilder(length);
+		for (int i = 0; i < length; i++) {
+			int value = leftLimit + (int) (this.sessionRandom.nextFloat() * (rightLimit - leftLimit + 1));
+			buffer.append((char) value);
+		}
+		return buffer.toString();
+	}
+
+	/**
+	 * Class that stores info about session entry.
+	 *
+	 * @author Ante Gazibaric
+	 * @version 1.0
+	 *
+	 */
+	private static class SessionMapEntry {
+
+		/**
+		 * Session ID.
+		 */
+		String sid;
+		/**
+		 * Session's host.
+		 */
+		String host;
+		/**
+		 * Session's time until it's valid
+		 */
+		volatile long validUntil;
+		/**
+		 * Session's map of parameters.
+		 */
+		Map<String, String> map;
+
+	}
+
+}
@@ -1,29 +1,39 @@
 package hr.fer.zemris.java.webserver;
 
-import java.io.BufferedOutputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
-import java.io.PushbackInputStream;
 import java.net.InetSocketAddress;
-import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
-import java.util.Random;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
+import hr.fer.zemris.java.custom.scripting.exec.ScriptBudget;
+import hr.fer.zemris.java.custom.scripting.exec.ScriptBudgetExceededException;
 import hr.fer.zemris.java.custom.scripting.exec.SmartScriptEngine;
-import hr.fer.zemris.java.custom.scripting.parser.SmartScriptParser;
+import hr.fer.zemris.java.webserver.BufferPool.PooledBuffer;
 import hr.fer.zemris.java.webserver.RequestContext.RCCookie;
 
 /**
@@ -77,6 +87,38 @@ public class SmartHttpServer {
 	 * Pool of server worker threads.
 	 */
 	private ExecutorService threadPool;
+	/**
+	 * Client workers of worker threads, each reused for all requests its thread serves.
+	 */
+	private ThreadLocal<ClientWorker> clientWorkers = ThreadLocal.withInitial(() -> new ClientWorker());
+	/**
+	 * Flag that shows if every connection is served by its own virtual thread
+	 * instead of by thread pool of {@link #workerThreads} threads.
+	 */
+	private boolean virtualThreads;
+	/**
+	 * Admission control of thread pool's queue, not used with virtual threads.
+	 */
+	private AdmissionControl admissionControl;
+	/**
+	 * Thread pools of traffic classes, together with their admission control. Request of
+	 * class that has no pool is served by the thread that read it.
+	 */
+	private Map<TrafficClass, AdmissionControl> bulkheads = new EnumMap<>(TrafficClass.class);
+	/**
+	 * Number of threads in thread pools of traffic classes.
+	 */
+	private Map<TrafficClass, Integer> bulkheadThreads = new EnumMap<>(TrafficClass.class);
+	/**
+	 * Controllers that size thread pools by latency of requests, by pools' admission
+	 * control. Pool without controller has fixed size.
+	 */
+	private Map<AdmissionControl, AdaptivePoolSizer> poolSizers = new HashMap<>();
+	/**
+	 * Response to connection that is rejected because server is overloaded,
+	 * without {@code Date} header and final empty line.
+	 */
+	private byte[] serviceUnavailable;
 	/**
 	 * Server's document root.
 	 */
@@ -86,21 +128,114 @@ public class SmartHttpServer {
 	 */
 	private Map<String, String> mimeTypes = new HashMap<>();
 	/**
-	 * Map of server's workers.
-	 */
-	private Map<String, IWebWorker> workersMap = new HashMap<>();
-	/**
-	 * Map of sessions.
+	 * Router of server's built-in routes and routes from workers configuration.
 	 */
-	private Map<String, SessionMapEntry> sessions = new HashMap<>();
+	private Router router = new Router();
 	/**
-	 * Random object used for generating session SID.
+	 * Server's sessions.
 	 */
-	private volatile Random sessionRandom = new Random();
+	private SessionStore sessions;
 	/**
 	 * Time for which sessions thread checker sleeps.
 	 */
 	private static final long SESSIONS_THREAD_SLEEP = 300_000; // 5 minutes
+	/**
+	 * Line terminator that ends error response.
+	 */
+	private static final byte[] CRLF = {'\r', '\n'};
+	/**
+	 * Response to malformed request.
+	 */
+	private static final byte[] BAD_REQUEST = errorResponse(400, "Bad request");
+	/**
+	 * Response to request of unsupported HTTP version.
+	 */
+	private static final byte[] VERSION_NOT_SUPPORTED = errorResponse(400, "HTTP version is not supported");
+	/**
+	 * Response to request of invalid path.
+	 */
+	private static final byte[] INVALID_PATH = errorResponse(404, "Requested path is not valid");
+	/**
+	 * Response to request of file outside of document root.
+	 */
+	private static final byte[] FORBIDDEN = errorResponse(403, "Forbbiden");
+	/**
+	 * Response to request of file that doesn't exist.
+	 */
+	private static final byte[] INVALID_FILE = errorResponse(404, "Requested file is not valid");
+	/**
+	 * Response to request of smart script that exceeded its execution budget.
+	 */
+	private static final byte[] BUDGET_EXCEEDED = errorResponse(500, "Script exceeded its execution budget");
+	/**
+	 * Response to request whose asynchronous worker didn't finish before deadline.
+	 */
+	private static final byte[] DEADLINE_EXCEEDED = errorResponse(504, "Request deadline exceeded");
+	/**
+	 * Name of metric with number of smart scripts that exceeded their execution budget.
+	 */
+	private static final String SCRIPTS_BUDGET_EXCEEDED = "scripts.budgetExceeded";
+	/**
+	 * Server's metrics.
+	 */
+	private ServerMetrics metrics = new ServerMetrics();
+	/**
+	 * Path on which server's metrics are published or empty string if they aren't.
+	 */
+	private String metricsPath;
+	/**
+	 * Time in milliseconds after which request is cancelled, {@code 0} if requests have no deadline.
+	 */
+	private long requestTimeout;
+	/**
+	 * Watchdog that reports stuck requests.
+	 */
+	private RequestWatchdog watchdog;
+	/**
+	 * Dynamic routes whose responses carry entity tag computed from content.
+	 * Route that ends with '*' matches every path with given prefix.
+	 */
+	private List<String> contentETagRoutes = new ArrayList<>();
+	/**
+	 * Cache of static files' metadata.
+	 */
+	private FileInfoCache fileInfoCache;
+	/**
+	 * Execution budget of smart scripts that don't have their own.
+	 */
+	private ScriptBudget scriptBudget;
+	/**
+	 * Execution budgets of smart scripts mapped by their URL paths.
+	 */
+	private Map<String, ScriptBudget> scriptBudgets = new HashMap<>();
+	/**
+	 * Cache of paths missing from document root or {@code null} if it's turned off.
+	 */
+	private NegativeLookupCache negativeLookupCache;
+	/**
+	 * Cache of parsed smart scripts.
+	 */
+	private ScriptCache scriptCache;
+	/**
+	 * Pool of buffers used for reading requests and writing responses.
+	 */
+	private BufferPool bufferPool;
+	/**
+	 * Size of buffer into which request is read, which is also maximum size of request.
+	 */
+	private static final int REQUEST_BUFFER_SIZE = 16 * 1024;
+	/**
+	 * Compression settings of text responses or {@code null} if compression is turned off.
+	 */
+	private GzipCompression gzipCompression;
+	/**
+	 * Store of compressed static files' variants or {@code null} if they aren't used.
+	 */
+	private PrecompressedFiles precompressedFiles;
+	/**
+	 * Caching policies of responses or {@code null} if none are configured.
+	 */
+	private CachePolicies cachePolicies;
 
 	/**
 	 * Main method.
@@ -155,10 +290,120 @@ public class SmartHttpServer {
 		domainName = properties.getProperty(ServerPropertiesKeys.DOMAIN);
 		port = Integer.parseInt(properties.getProperty(ServerPropertiesKeys.PORT));
 		workerThreads = Integer.parseInt(properties.getProperty(ServerPropertiesKeys.THREADS));
+		virtualThreads = "virtual".equalsIgnoreCase(properties.getProperty(ServerPropertiesKeys.EXECUTOR, "platform").trim());
 		sessionTimeout = Integer.parseInt(properties.getProperty(ServerPropertiesKeys.TIMEOUT));
-		documentRoot = Paths.get(properties.getProperty(ServerPropertiesKeys.DOCUMENT)).toAbsolutePath();
+		sessions = new SessionStore(sessionTimeout);
+		documentRoot = Paths.get(properties.getProperty(ServerPropertiesKeys.DOCUMENT)).toAbsolutePath().normalize();
+		metricsPath = properties.getProperty(ServerPropertiesKeys.METRICS_PATH, "").trim();
+		for (String route : properties.getProperty(ServerPropertiesKeys.CONTENT_ETAG, "").split(",")) {
+			if (!route.trim().isEmpty()) {
+				contentETagRoutes.add(route.trim());
+			}
+		}
+		long maxQueueTime = Long.parseLong(properties.getProperty(ServerPropertiesKeys.ADMISSION_MAX_QUEUE_TIME, "2000"));
+		long target = Long.parseLong(properties.getProperty(ServerPropertiesKeys.ADMISSION_TARGET, "5"));
+		long interval = Long.parseLong(properties.getProperty(ServerPropertiesKeys.ADMISSION_INTERVAL, "100"));
+		admissionControl = new AdmissionControl("admission",
+				Integer.parseInt(properties.getProperty(ServerPropertiesKeys.ADMISSION_MAX_QUEUE, "200")),
+				maxQueueTime, target, interval, metrics);
+		int minThreads = Integer.parseInt(properties.getProperty(ServerPropertiesKeys.ADAPTIVE_MIN_THREADS, "1"));
+		int maxThreads = Integer.parseInt(properties.getProperty(ServerPropertiesKeys.ADAPTIVE_MAX_THREADS, "0"));
+		long window = Long.parseLong(properties.getProperty(ServerPropertiesKeys.ADAPTIVE_WINDOW, "1000"));
+		if (maxThreads > 0) {
+			poolSizers.put(admissionControl,
+					new AdaptivePoolSizer(admissionControl, minThreads, maxThreads, window, metrics));
+		}
+		for (TrafficClass trafficClass : TrafficClass.values()) {
+			String prefix = ServerPropertiesKeys.BULKHEAD + "." + trafficClass.configName();
+			int threads = Integer.parseInt(properties.getProperty(prefix + ".threads", "0"));
+			if (threads > 0) {
+				AdmissionControl bulkhead = new AdmissionControl("bulkhead." + trafficClass.configName(),
+						Integer.parseInt(properties.getProperty(prefix + ".maxQueue", "100")),
+						maxQueueTime, target, interval, metrics);
+				bulkheads.put(trafficClass, bulkhead);
+				bulkheadThreads.put(trafficClass, threads);
+				int bulkheadMaxThreads = Integer.parseInt(properties.getProperty(prefix + ".maxThreads", "0"));
+				if (bulkheadMaxThreads > threads) {
+					poolSizers.put(bulkhead, new AdaptivePoolSizer(bulkhead, Math.min(minThreads, threads),
+							bulkheadMaxThreads, window, metrics));
+				}
+			}
+		}
+		serviceUnavailable = new HeaderWriter()
+				.write(errorResponse(503, "Service Unavailable"))
+				.header("Retry-After", properties.getProperty(ServerPropertiesKeys.ADMISSION_RETRY_AFTER, "1").trim())
+				.toByteArray();
+		requestTimeout = Long.parseLong(properties.getProperty(ServerPropertiesKeys.REQUEST_TIMEOUT, "0"));
+		watchdog = new RequestWatchdog(
+				Long.parseLong(properties.getProperty(ServerPropertiesKeys.WATCHDOG_BUDGET, "10000")),
+				Long.parseLong(properties.getProperty(ServerPropertiesKeys.WATCHDOG_PERIOD, "1000")),
+				metrics);
+		bufferPool = new BufferPool(
+				Long.parseLong(properties.getProperty(ServerPropertiesKeys.BUFFERS_MAX_MEMORY, "16777216")),
+				Boolean.parseBoolean(properties.getProperty(ServerPropertiesKeys.BUFFERS_LEAK_DETECTION, "false")),
+				metrics);
+		int gzipLevel = Integer.parseInt(properties.getProperty(ServerPropertiesKeys.GZIP_LEVEL, "6"));
+		if (gzipLevel > 0) {
+			gzipCompression = new GzipCompression(gzipLevel,
+					Integer.parseInt(properties.getProperty(ServerPropertiesKeys.GZIP_MIN_SIZE, "1024")));
+		}
+		fileInfoCache = new FileInfoCache(
+				Long.parseLong(properties.getProperty(ServerPropertiesKeys.OPEN_FILE_CACHE_VALID, "0")),
+				Integer.parseInt(properties.getProperty(ServerPropertiesKeys.OPEN_FILE_CACHE_MAX_OPEN_FILES, "0")),
+				Long.parseLong(properties.getProperty(ServerPropertiesKeys.OPEN_FILE_CACHE_MAX_CONTENT_BYTES, "0")));
+		metrics.registerGauge("files.open", fileInfoCache::getOpenFiles);
+		scriptCache = new ScriptCache(fileInfoCache);
+		int negativeEntries = Integer.parseInt(properties.getProperty(ServerPropertiesKeys.NEGATIVE_CACHE_MAX_ENTRIES, "0"));
+		if (negativeEntries > 0) {
+			negativeLookupCache = new NegativeLookupCache(documentRoot, negativeEntries, metrics);
+		}
 		loadMimeTypes(Paths.get(properties.getProperty(ServerPropertiesKeys.MIME)));
+		router.add("/private*", new Route("/private*", Route.Type.PRIVATE, null, null));
+		// Metrics reveal server's internals, so they are published only when path is configured
+		if (!metricsPath.isEmpty()) {
+			router.add(metricsPath, new Route(metricsPath, Route.Type.METRICS, TrafficClass.INTERNAL, null));
+		}
+		router.add("/ext/*", new Route("/ext/*", Route.Type.EXTENSION, TrafficClass.WORKER, null));
 		loadWorkers(Paths.get(properties.getProperty(ServerPropertiesKeys.WORKERS)));
+		scriptBudget = new ScriptBudget(
+				Long.parseLong(properties.getProperty(ServerPropertiesKeys.SCRIPT_MAX_ITERATIONS, "0")),
+				Long.parseLong(properties.getProperty(ServerPropertiesKeys.SCRIPT_MAX_OUTPUT, "0")),
+				Long.parseLong(properties.getProperty(ServerPropertiesKeys.SCRIPT_MAX_TIME, "0")));
+		String budgetsConfig = properties.getProperty(ServerPropertiesKeys.SCRIPT_BUDGETS, "").trim();
+		if (!budgetsConfig.isEmpty()) {
+			loadScriptBudgets(Paths.get(budgetsConfig));
+		}
+		String cacheConfig = properties.getProperty(ServerPropertiesKeys.CACHE, "").trim();
+		if (!cacheConfig.isEmpty()) {
+			try {
+				cachePolicies = CachePolicies.load(Paths.get(cacheConfig));
+			} catch (IOException ex) {
+				ex.printStackTrace();
+			}
+		}
+		String precompressedDir = properties.getProperty(ServerPropertiesKeys.GZIP_PRECOMPRESSED, "").trim();
+		if (gzipCompression != null && !precompressedDir.isEmpty()) {
+			precompressedFiles = new PrecompressedFiles(documentRoot, Paths.get(precompressedDir).toAbsolutePath(),
+					mimeTypes, gzipCompression.getMinSize(), fileInfoCache);
+		}
+	}
+	
+	/**
+	 * Method builds error response with given status. Response is built
+	 * without {@code Date} header and final empty line.
+	 * 
+	 * @param statusCode status code
+	 * @param statusText status text
+	 * @return           error response bytes
+	 */
+	private static byte[] errorResponse(int statusCode, String statusText) {
+		return new HeaderWriter()
+				.statusLine(statusCode, statusText)
+				.header("Server", "simple java server")
+				.header(HeaderWriter.CONTENT_TYPE, "text/plain;charset=UTF-8")
+				.header(HeaderWriter.CONTENT_LENGTH, 0)
+				.header("Connection", "close")
+				.toByteArray();
 	}
 	
 	/**
@@ -179,7 +424,9 @@ public class SmartHttpServer {
 	}
 	
 	/**
-	 * Method loads server's workers from given path {@code workersPath}.
+	 * Method loads server's routes from given path {@code workersPath}. Key is route pattern
+	 * (see {@link Router}), value is fully qualified class name of worker, or {@code static}
+	 * or {@code script} for routes whose files are served as static files or smart scripts.
 	 * 
 	 * @param workersPath path to the server's workers.properties file
 	 */
@@ -189,15 +436,19 @@ public class SmartHttpServer {
 			workersProp.load(Files.newInputStream(workersPath));
 
 			for (String path : workersProp.stringPropertyNames()) {
-				if (workersMap.containsKey(path))
-					throw new RuntimeException("Paths for workers must be unique. Duplicate path: " + path);
-
-				String fqcn = workersProp.getProperty(path);
-				Class<?> referenceToClass = this.getClass().getClassLoader().loadClass(fqcn);
+				String value = workersProp.getProperty(path).trim();
+				if (value.equals("static")) {
+					router.add(path, new Route(path, Route.Type.FILE, TrafficClass.STATIC, null));
+					continue;
+				}
+				if (value.equals("script")) {
+					router.add(path, new Route(path, Route.Type.FILE, TrafficClass.SCRIPT, null));
+					continue;
+				}
+				Class<?> referenceToClass = this.getClass().getClassLoader().loadClass(value);
 				@SuppressWarnings("deprecation")
 				Object newObject = referenceToClass.newInstance();
-				IWebWorker iww = (IWebWorker) newObject;
-				workersMap.put(path, iww);
+				router.add(path, new Route(path, Route.Type.WORKER, TrafficClass.WORKER, toAsyncWorker(newObject)));
 			}
 
 		} catch (IOException | ClassNotFoundException | 
@@ -207,6 +458,36 @@ public class SmartHttpServer {
 
 	}
 
+	/**
+	 * Method loads execution budgets of smart scripts from given path {@code budgetsPath}.
+	 * Limits that script's budget doesn't list are taken from global budget.
+	 * 
+	 * @param budgetsPath path to the server's scripts.properties file
+	 */
+	private void loadScriptBudgets(Path budgetsPath) {
+		Properties budgetsProp = new Properties();
+		try {
+			budgetsProp.load(Files.newInputStream(budgetsPath));
+		} catch (IOException ex) {
+			ex.printStackTrace();
+		}
+		for (String path : budgetsProp.stringPropertyNames()) {
+			scriptBudgets.put(path, scriptBudget.withLimits(budgetsProp.getProperty(path)));
+		}
+	}
+
+	/**
+	 * Method returns given worker as {@link AsyncWebWorker}. Synchronous worker is adapted.
+	 * 
+	 * @param worker worker that implements either {@link AsyncWebWorker} or {@link IWebWorker}
+	 * @return       asynchronous worker
+	 */
+	private static AsyncWebWorker toAsyncWorker(Object worker) {
+		if (worker instanceof AsyncWebWorker)
+			return (AsyncWebWorker) worker;
+		return AsyncWebWorker.of((IWebWorker) worker);
+	}
+
 	/**
 	 * Method that starts server thread if it already hasn't been started.
 	 */
@@ -215,12 +496,158 @@ public class SmartHttpServer {
 			serverThread = new ServerThread();
 		}
 		if (!serverThread.isAlive()) {
-			threadPool = Executors.newFixedThreadPool(workerThreads);
+			threadPool = createThreadPool();
 			serverThread.start();
+			watchdog.start();
+			if (negativeLookupCache != null) {
+				negativeLookupCache.start();
+			}
+			if (precompressedFiles != null) {
+				// Variants that aren't ready yet are built on first access
+				Thread generator = new Thread(precompressedFiles::generateAll, "precompressed-files");
+				generator.setDaemon(true);
+				generator.start();
+			}
 		}
 		startSessionsCheckThread();
 	}
 
+	/**
+	 * Method creates executor that serves connections. In virtual mode every connection
+	 * gets its own virtual thread, so blocking workers don't limit number of connections
+	 * that are served at once. Virtual threads are available from Java 21, on older
+	 * runtime server falls back to thread pool. With thread pool, pools of traffic
+	 * classes are created too.
+	 * 
+	 * @return executor that serves connections
+	 */
+	private ExecutorService createThreadPool() {
+		if (virtualThreads) {
+			try {
+				// Looked up at runtime so that server still compiles for older Java versions
+				ExecutorService executor = (ExecutorService) Executors.class
+						.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+				// Virtual threads aren't scarce, so there is nothing to isolate
+				bulkheads.clear();
+				return executor;
+			} catch (ReflectiveOperationException ex) {
+				System.err.println("Virtual threads aren't supported by this Java runtime, using "
+						+ workerThreads + " worker threads instead.");
+				virtualThreads = false;
+			}
+		}
+		bulkheads.forEach((trafficClass, bulkhead) -> bulkhead.newThreadPool(bulkheadThreads.get(trafficClass)));
+		return admissionControl.newThreadPool(workerThreads);
+	}
+
+	/**
+	 * Method serves connection that was accepted at given time, unless admission
+	 * control drops it because it waited too long for worker thread.
+	 * 
+	 * @param client   client's channel
+	 * @param accepted time in nanoseconds when connection was accepted
+	 */
+	private void serveConnection(SocketChannel client, long accepted) {
+		if (virtualThreads) {
+			clientWorker().serve(client.socket(), null, null, new CancellationToken(requestTimeout, accepted));
+		} else if (admissionControl.admit(accepted)) {
+			long started = System.nanoTime();
+			clientWorker().serve(client.socket(), null, null, new CancellationToken(requestTimeout, accepted));
+			recordLatency(admissionControl, accepted, started);
+		} else {
+			rejectConnection(client);
+		}
+	}
+
+	/**
+	 * Method serves already read request that was handed off to traffic class's
+	 * thread pool at given time, unless pool's admission control drops it or
+	 * request's deadline passed while it waited in pool's queue.
+	 * 
+	 * @param bulkhead admission control of traffic class's pool
+	 * @param client   client's channel
+	 * @param request  client's request lines
+	 * @param token    cancellation token of request, with deadline counted from connection's acceptance
+	 * @param handedOff time in nanoseconds when request was handed off
+	 */
+	private void serveHandedOff(AdmissionControl bulkhead, SocketChannel client, List<String> request,
+			CancellationToken token, long handedOff) {
+		if (token.isCancelled()) {
+			metrics.increment(CancellationToken.CANCELLED);
+			rejectConnection(client);
+		} else if (bulkhead.admit(handedOff)) {
+			long started = System.nanoTime();
+			clientWorker().serve(client.socket(), request, token);
+			recordLatency(bulkhead, handedOff, started);
+		} else {
+			rejectConnection(client);
+		}
+	}
+
+	/**
+	 * Method reports latency of request that has just been served to controller
+	 * that sizes thread pool of given admission control, if pool has one.
+	 * 
+	 * @param admission admission control of pool that served request
+	 * @param enqueued  time in nanoseconds when request was put in pool's queue
+	 * @param started   time in nanoseconds when pool's thread started serving request
+	 */
+	private void recordLatency(AdmissionControl admission, long enqueued, long started) {
+		AdaptivePoolSizer sizer = poolSizers.get(admission);
+		if (sizer != null) {
+			sizer.record(started - enqueued, System.nanoTime() - started);
+		}
+	}
+
+	/**
+	 * Method returns traffic class of request on given URL path.
+	 * 
+	 * @param urlPath requested URL path
+	 * @return        traffic class
+	 */
+	private TrafficClass trafficClass(String urlPath) {
+		return trafficClass(router.find(urlPath, null), urlPath);
+	}
+
+	/**
+	 * Method returns traffic class of request with given route. If route doesn't
+	 * determine class, smart scripts are recognized by extension of requested file.
+	 * 
+	 * @param route   route of request, can be {@code null}
+	 * @param urlPath requested URL path
+	 * @return        traffic class
+	 */
+	private static TrafficClass trafficClass(Route route, String urlPath) {
+		if (route != null && route.getTrafficClass() != null)
+			return route.getTrafficClass();
+		return urlPath.endsWith(".smscr") ? TrafficClass.SCRIPT : TrafficClass.STATIC;
+	}
+
+	/**
+	 * Method sends {@code 503 Service Unavailable} response to given client and closes
+	 * connection without waiting for client's request. Method never blocks, so it can
+	 * be called from the thread that accepts connections.
+	 * 
+	 * @param client client's channel
+	 */
+	private void rejectConnection(SocketChannel client) {
+		PooledBuffer discard = bufferPool.acquire(4096);
+		try (SocketChannel channel = client) {
+			channel.configureBlocking(false);
+			channel.write(new ByteBuffer[] {ByteBuffer.wrap(serviceUnavailable),
+					ByteBuffer.wrap(HeaderWriter.dateLine()), ByteBuffer.wrap(CRLF)});
+			channel.shutdownOutput();
+			// Closing socket with unread request resets connection and loses response
+			while (channel.read(discard.buffer()) > 0) {
+				discard.buffer().clear();
+			}
+		} catch (IOException ignorable) {
+			// Client has already closed connection
+		} finally {
+			discard.release();
+		}
+	}
+
 	/**
 	 * Method stops server thread if it's running and shuts down thread pool.
 	 */
@@ -228,7 +655,32 @@ public class SmartHttpServer {
 		if (serverThread != null && serverThread.isAlive()) {
 			serverThread.stopThread();
 			threadPool.shutdown();
+			for (AdmissionControl bulkhead : bulkheads.values()) {
+				bulkhead.getExecutor().shutdown();
+			}
+			watchdog.stop();
+			fileInfoCache.closeOpenFiles();
+			if (negativeLookupCache != null) {
+				negativeLookupCache.stop();
+			}
+		}
+	}
+	
+	/**
+	 * Method processes one request that is read from given {@code input}
+	 * and writes response to given {@code output} in the calling thread.
+	 * Request goes through the same pipeline as requests from sockets.
+	 * 
+	 * @param input  stream from which request is read
+	 * @param output stream to which response is written
+	 */
+	void serve(InputStream input, OutputStream output) {
+		ClientWorker worker = clientWorkers.get();
+		if (worker.busy) {
+			// Request served from inside another request can't reuse its worker
+			worker = new ClientWorker();
 		}
+		worker.serve(null, input, output, new CancellationToken(requestTimeout));
 	}
 	
 	/**
@@ -238,7 +690,7 @@ public class SmartHttpServer {
 	private void startSessionsCheckThread() {
 		Thread sessionsCheckThread = new Thread(() -> {
 			while (true) {
-				sessions.entrySet().removeIf(e -> e.getValue().validUntil < System.currentTimeMillis() / 1000);
+				sessions.removeExpired();
 				try {
 					Thread.sleep(SESSIONS_THREAD_SLEEP);
 				} catch (InterruptedException ex) {
@@ -273,14 +725,23 @@ public class SmartHttpServer {
 		
 		@Override
 		public void run() {
-				ServerSocket serverSocket;
+				ServerSocketChannel serverSocket;
 				try {
-					serverSocket = new ServerSocket();
+					serverSocket = ServerSocketChannel.open();
 					serverSocket.bind(new InetSocketAddress(address, port));
 					while (isRunning) {
-						Socket client = serverSocket.accept();
-						ClientWorker cw = new ClientWorker(client);
-						threadPool.submit(cw);
+						SocketChannel client = serverSocket.accept();
+						long accepted = System.nanoTime();
+						try {
+							if (virtualThreads) {
+								threadPool.execute(() -> serveConnection(client, accepted));
+							} else {
+								admissionControl.execute(() -> serveConnection(client, accepted));
+							}
+						} catch (RejectedExecutionException ex) {
+							admissionControl.rejected();
+							rejectConnection(client);
+						}
 					}
 					serverSocket.close();
 				} catch (IOException ex) {
@@ -290,23 +751,52 @@ public class SmartHttpServer {
 	}
 
 	/**
-	 * Class represents client's worker that extends {@link Runnable}.
-	 * It processes client request and sends him back wanted content if request is valid.
+	 * Method returns worker that serves connection in current thread. Pool threads
+	 * reuse their own worker, while virtual threads, which serve only one connection,
+	 * get new worker instead of keeping one in thread local.
+	 * 
+	 * @return client's worker
+	 */
+	private ClientWorker clientWorker() {
+		return virtualThreads ? new ClientWorker() : clientWorkers.get();
+	}
+
+	/**
+	 * Class represents client's worker. It processes client request and sends
+	 * him back wanted content if request is valid.
+	 * <p>
+	 * Every worker thread has its own worker that is reused for all requests the thread
+	 * serves, together with its parameter maps, cookie list, request lines and context.
+	 * Worker is reset before each request and again when request ends, so nothing
+	 * from one request is visible to the next one and no references to client's
+	 * socket or session are kept while worker is idle.
 	 * 
 	 * @author Ante Gazibaric
 	 * @version 1.0
 	 *
 	 */
-	private class ClientWorker implements Runnable, IDispatcher {
+	private class ClientWorker implements IDispatcher {
 		
 		/**
-		 * Client's socket.
+		 * Client's socket or {@code null} if client is connected in-process.
 		 */
 		private Socket csocket;
 		/**
-		 * Client's input stream.
+		 * Client's raw input stream.
+		 */
+		private InputStream input;
+		/**
+		 * Client's raw output stream.
 		 */
-		private PushbackInputStream istream;
+		private OutputStream output;
+		/**
+		 * Client's input channel.
+		 */
+		private ReadableByteChannel inputChannel;
+		/**
+		 * Client's request lines.
+		 */
+		private List<String> request = new ArrayList<>();
 		/**
 		 * Client's output stream.
 		 */
@@ -332,138 +822,348 @@ public class SmartHttpServer {
 		 */
 		private Map<String, String> tempParams = new HashMap<>();
 		/**
-		 * Persistent parameters.
+		 * Persistent parameters, owned by client's session.
 		 */
-		private Map<String, String> permPrams = new HashMap<>();
+		private Map<String, String> permPrams;
 		/**
 		 * List of session's cookies.
 		 */
 		private List<RCCookie> outputCookies = new ArrayList<>();
-		/**
-		 * Session ID.
-		 */
-		private String SID;
 		/**
 		 * Mime type of requested file.
 		 */
 		private String mimeType;
 		/**
-		 * Session's requested context.
+		 * Session's requested context, reused between requests.
 		 */
 		private RequestContext context; 
+		/**
+		 * Flag that shows if context is prepared for current request.
+		 */
+		private boolean contextReady;
+		/**
+		 * Flag that shows if worker is serving request.
+		 */
+		private boolean busy;
+		/**
+		 * Flag that shows if request was read by another thread and handed off to this one.
+		 */
+		private boolean handedOff;
+		/**
+		 * Request's entry in the watchdog.
+		 */
+		private RequestWatchdog.InFlightRequest inFlight;
+		/**
+		 * Processing of asynchronous worker that hasn't completed when worker returned,
+		 * or {@code null} if response is completed by this worker's thread.
+		 */
+		private CompletableFuture<Void> pending;
+		/**
+		 * Token that shows if processing of current request should stop.
+		 */
+		private CancellationToken cancellationToken;
 
 		/**
-		 * Constructor that creates new {@link ClientWorker} object.
+		 * Method serves one request of client that is connected either through
+		 * given socket or through given streams.
+		 * 
+		 * @param csocket client's socket, {@code null} if client is connected through streams
+		 * @param input   stream from which client's request is read
+		 * @param output  stream to which response is written
+		 * @param token   cancellation token of request
+		 */
+		public void serve(Socket csocket, InputStream input, OutputStream output, CancellationToken token) {
+			reset();
+			this.csocket = csocket;
+			this.input = input;
+			this.output = output;
+			cancellationToken = token;
+			busy = true;
+			runAndComplete();
+		}
+
+		/**
+		 * Method serves request of client connected through given socket
+		 * whose request lines have already been read.
 		 * 
 		 * @param csocket client's socket
+		 * @param request client's request lines
+		 * @param token   cancellation token that request got when it was read, so
+		 *                waiting for thread of traffic class counts towards its deadline
 		 */
-		public ClientWorker(Socket csocket) {
+		public void serve(Socket csocket, List<String> request, CancellationToken token) {
+			reset();
 			this.csocket = csocket;
+			this.request.addAll(request);
+			cancellationToken = token;
+			handedOff = true;
+			busy = true;
+			runAndComplete();
+		}
+		
+		/**
+		 * Method processes request. If asynchronous worker hasn't completed response when
+		 * processing returns, worker stays with the request until worker completes it,
+		 * and current thread gets new worker for its next request.
+		 */
+		private void runAndComplete() {
+			try {
+				run();
+			} finally {
+				if (pending == null) {
+					reset();
+				}
+			}
+			if (pending == null)
+				return;
+			if (!virtualThreads && clientWorkers.get() == this) {
+				clientWorkers.remove();
+			}
+			long remaining = cancellationToken.getRemainingMillis();
+			if (remaining != Long.MAX_VALUE) {
+				pending.orTimeout(remaining, TimeUnit.MILLISECONDS);
+			}
+			// Registered last, because callback may run right away in this thread
+			pending.whenComplete((result, error) -> completeResponse(error));
 		}
 
-		@Override
-		public void run() {
+		/**
+		 * Method completes response of asynchronous worker and closes connection.
+		 * If worker didn't finish before deadline, its buffered response is
+		 * discarded and client gets error response instead.
+		 * 
+		 * @param error exception that processing failed with, or {@code null} if it succeeded
+		 */
+		private void completeResponse(Throwable error) {
+			try {
+				if (error != null) {
+					if (error instanceof CompletionException && error.getCause() != null) {
+						error = error.getCause();
+					}
+					if (error instanceof TimeoutException) {
+						// Worker's later writes fail on cancelled token instead of reaching connection
+						cancellationToken.cancel("Request deadline exceeded");
+						if (context.discardResponse()) {
+							sendError(ostream, DEADLINE_EXCEEDED);
+						}
+					}
+					reportFailure(error);
+				} else {
+					context.finish();
+				}
+			} catch (Exception ex) {
+				reportFailure(ex);
+			} finally {
+				closeConnection();
+				reset();
+			}
+		}
+
+		/**
+		 * Method returns worker to its initial state. Parameter maps, cookie list and
+		 * request lines are cleared, while references to client's streams, session and
+		 * previous request's values are dropped. Context is prepared again on first use.
+		 */
+		private void reset() {
+			busy = false;
+			csocket = null;
+			input = null;
+			output = null;
+			inputChannel = null;
+			ostream = null;
+			request.clear();
+			version = null;
+			method = null;
+			host = null;
+			params.clear();
+			tempParams.clear();
+			permPrams = null;
+			outputCookies.clear();
+			mimeType = null;
+			contextReady = false;
+			handedOff = false;
+			inFlight = null;
+			pending = null;
+			cancellationToken = null;
+		}
+
+		/**
+		 * Method reports exception that processing of request failed with.
+		 * Failures of cancelled requests are expected, so they are only counted.
+		 * 
+		 * @param ex exception that processing failed with
+		 */
+		private void reportFailure(Throwable ex) {
+			if (cancellationToken != null && cancellationToken.isCancelled()) {
+				metrics.increment(CancellationToken.CANCELLED);
+			} else {
+				ex.printStackTrace();
+			}
+		}
+
+		/**
+		 * Method processes client's request.
+		 */
+		private void run() {
+			inFlight = watchdog.begin();
 			try {
-				istream = new PushbackInputStream(csocket.getInputStream());
-				ostream = new BufferedOutputStream(csocket.getOutputStream());
+				SocketChannel channel = csocket == null ? null : csocket.getChannel();
+				if (channel != null) {
+					inputChannel = channel;
+					ostream = new GatheringOutputStream(channel, null, bufferPool);
+				} else {
+					if (csocket != null) {
+						input = csocket.getInputStream();
+						output = csocket.getOutputStream();
+					}
+					inputChannel = Channels.newChannel(input);
+					ostream = output;
+				}
 				
-				List<String> request = readRequest(istream);
+				if (!handedOff) {
+					PooledBuffer requestBuffer = bufferPool.acquire(REQUEST_BUFFER_SIZE);
+					try {
+						RequestParser.readRequest(inputChannel, requestBuffer.buffer(), request);
+					} finally {
+						requestBuffer.release();
+					}
+				}
 				
-				String[] firstLine = request.isEmpty() ? null : request.get(0).split(" ");
-				if (firstLine == null || firstLine.length != 3) {
-					sendError(ostream, 400, "Bad request");
+				// Request line is split by positions of its two spaces
+				String firstLine = request.isEmpty() ? "" : request.get(0);
+				int methodEnd = firstLine.indexOf(' ');
+				int pathEnd = methodEnd < 0 ? -1 : firstLine.indexOf(' ', methodEnd + 1);
+				if (methodEnd <= 0 || pathEnd <= methodEnd + 1 || pathEnd == firstLine.length() - 1
+						|| firstLine.indexOf(' ', pathEnd + 1) >= 0) {
+					sendError(ostream, BAD_REQUEST);
 					return;
 				}
 				
-				method = firstLine[0].toUpperCase();
-				if (!method.equals("GET")) {
-					sendError(ostream, 400, "Bad request");
+				if (methodEnd != 3 || !firstLine.regionMatches(true, 0, "GET", 0, 3)) {
+					sendError(ostream, BAD_REQUEST);
 					return;
 				}
+				method = "GET";
 				
-				version = firstLine[2].toUpperCase();
-				if (!version.equals("HTTP/1.1") && !version.equals("HTTP/1.0")) {
-					sendError(ostream, 400, "HTTP version is not supported");
+				if (firstLine.regionMatches(true, pathEnd + 1, "HTTP/1.1", 0, 8)
+						&& firstLine.length() == pathEnd + 9) {
+					version = "HTTP/1.1";
+				} else if (firstLine.regionMatches(true, pathEnd + 1, "HTTP/1.0", 0, 8)
+						&& firstLine.length() == pathEnd + 9) {
+					version = "HTTP/1.0";
+				} else {
+					sendError(ostream, VERSION_NOT_SUPPORTED);
 					return;
 				}
 				
-				getHost(request);
-				checkSession(request);
-				String urlPath = getPathParameters(firstLine[1]);
-				getMimeType(urlPath);
+				// Route is found for normalized path, so '.' and '..' segments can't bypass it
+				String urlPath = RequestParser.normalizePath(
+						getPathParameters(firstLine.substring(methodEnd + 1, pathEnd)));
+				if (urlPath == null) {
+					sendError(ostream, BAD_REQUEST);
+					return;
+				}
+				inFlight.setRoute(urlPath);
+				if (handOff(urlPath))
+					return;
+				
+				host = RequestParser.parseHost(request, domainName);
+				permPrams = sessions.checkSession(request, host, outputCookies);
+				mimeType = RequestParser.resolveMimeType(urlPath, mimeTypes);
+				checkRequestContext();
+				if (cachePolicies != null) {
+					// Output of scripts and workers changes, so only policies of its paths apply
+					context.setCachePolicies(cachePolicies, urlPath, trafficClass(urlPath) == TrafficClass.STATIC);
+				}
+				if (isContentETagRoute(urlPath)) {
+					context.enableContentETag(RequestParser.getHeader(request, "If-None-Match"));
+				}
 				internalDispatchRequest(urlPath, true);
+				if (pending == null) {
+					context.finish();
+				}
 				
 			} catch (Exception ex) {
-				ex.printStackTrace();
+				reportFailure(ex);
 			} finally {
+				if (pending == null) {
+					closeConnection();
+				}
+			}
+		}
+
+		/**
+		 * Method ends request's entry in the watchdog, flushes response and closes connection.
+		 */
+		private void closeConnection() {
+			watchdog.end(inFlight);
+			try {
+				// Closing gathering stream returns its buffers to the pool
 				try {
-					csocket.close();
-				} catch (Exception ex) {
+					if (ostream instanceof GatheringOutputStream) {
+						ostream.close();
+					} else if (ostream != null) {
+						ostream.flush();
+					}
+				} finally {
+					if (csocket != null) {
+						csocket.close();
+					}
+				}
+			} catch (Exception ex) {
+				// Client of cancelled request has usually gone away, so there is nothing to report
+				if (cancellationToken == null || !cancellationToken.isCancelled()) {
 					ex.printStackTrace();
 				}
 			}
 		}
 		
 		/**
-		 * Method checks client's request for cookies.
+		 * Method hands off request to thread pool of its traffic class, if class has one.
+		 * Connection then belongs to that pool and this worker must not use it anymore.
+		 * If pool is full, client gets {@code 503 Service Unavailable} response.
 		 * 
-		 * @param request client's request lines
+		 * @param urlPath requested URL path
+		 * @return        {@code true} if request was handed off, {@code false} if it's served here
 		 */
-		private void checkSession(List<String> request) {
-			String sidCandidate = null;
-			Map<String, String> sessionEntryMap = new ConcurrentHashMap<>();
-			for (String header : request) {
-				if (header.startsWith("Cookie:")) {
-					int index = header.indexOf("Cookie:") + "Cookie:".length();
-					String[] cookies = header.substring(index).trim().split(";");
-					
-					for (String cookie : cookies) {
-						String[] cookiePair = cookie.split("=");
-						String name = cookiePair[0];
-						String value = cookiePair[1].substring(1, cookiePair[1].length() - 1); // Remove quotes
-						sessionEntryMap.put(name, value);
-						if (name.toLowerCase().equals("sid")) {
-							sidCandidate = SID = value;
-						}
-					}
-				}
-			}
-			
-			if (sidCandidate == null) {
-				addNewSession(host, generateRandomSid(), sessionEntryMap);
-				return;
-			}
-
-			// Entry exists
-			SessionMapEntry entry = sessions.get(sidCandidate);
-			if (!entry.host.equals(this.host)) {
-				addNewSession(this.host, generateRandomSid(), sessionEntryMap);
-			} else if (entry.validUntil < System.currentTimeMillis() / 1000) {
-				sessions.remove(sidCandidate);
-				addNewSession(this.host, generateRandomSid(), sessionEntryMap);
-			} else {
-				// If it's valid entry, update validUntil
-				entry.validUntil = sessionTimeout + System.currentTimeMillis() / 1000;
-				this.permPrams = entry.map;
+		private boolean handOff(String urlPath) {
+			if (handedOff || csocket == null || csocket.getChannel() == null)
+				return false;
+			AdmissionControl bulkhead = bulkheads.get(trafficClass(urlPath));
+			if (bulkhead == null)
+				return false;
+			SocketChannel client = csocket.getChannel();
+			List<String> lines = new ArrayList<>(request);
+			CancellationToken token = cancellationToken;
+			long now = System.nanoTime();
+			csocket = null;
+			try {
+				bulkhead.execute(() -> serveHandedOff(bulkhead, client, lines, token, now));
+			} catch (RejectedExecutionException ex) {
+				bulkhead.rejected();
+				rejectConnection(client);
 			}
+			return true;
 		}
 		
 		/**
-		 * Method adds new session to the sessions map.
+		 * Method checks if response of given dynamic route should carry
+		 * entity tag computed from its content.
 		 * 
-		 * @param host session's host
-		 * @param sid  session's sid
-		 * @param map  map of parameters
-		 */
-		private void addNewSession(String host, String sid, Map<String, String> map) {
-			SessionMapEntry entry = new SessionMapEntry();
-			entry.host = host;
-			entry.sid = SID = sid;
-			entry.map = map;
-			entry.validUntil = sessionTimeout + System.currentTimeMillis() / 1000;
-			sessions.put(SID, entry);
-			outputCookies.add(new RCCookie("sid", SID, null, host, "/"));
-			this.permPrams = map;
+		 * @param urlPath requested URL path
+		 * @return        {@code true} if route is dynamic and configured for content entity tags
+		 */
+		private boolean isContentETagRoute(String urlPath) {
+			TrafficClass trafficClass = trafficClass(urlPath);
+			if (trafficClass != TrafficClass.SCRIPT && trafficClass != TrafficClass.WORKER)
+				return false;
+			for (String route : contentETagRoutes) {
+				if (route.endsWith("*") ? urlPath.startsWith(route.substring(0, route.length() - 1))
+						: urlPath.equals(route)) {
+					return true;
+				}
+			}
+			return false;
 		}
 		
 		/**
@@ -475,12 +1175,13 @@ public class SmartHttpServer {
 		 * @throws Exception    if parsing fails
 		 */
 		private String getPathParameters(String requestedPath) throws Exception {
-			String[] pathParts = requestedPath.split("\\?");
-			if (pathParts.length == 2) {
-				String paramString = pathParts[1];
-				parseParameters(paramString);
+			int query = requestedPath.indexOf('?');
+			if (query < 0)
+				return requestedPath;
+			if (query < requestedPath.length() - 1 && requestedPath.indexOf('?', query + 1) < 0) {
+				RequestParser.parseParameters(requestedPath.substring(query + 1), params);
 			}
-			return pathParts[0];
+			return requestedPath.substring(0, query);
 		}
 		
 		@Override
@@ -498,27 +1199,36 @@ public class SmartHttpServer {
 		public void internalDispatchRequest(String urlPath, boolean directCall) throws Exception {
 			checkRequestContext();
 			
-			if (urlPath.startsWith("/private") && directCall) {
-				sendError(ostream, 404, "Requested path is not valid");
-				return;
-			}
-			
-			if (urlPath.startsWith("/ext/")) {
-				writeEchoParams(urlPath.substring(urlPath.lastIndexOf("/") + 1));
+			Route route = router.find(urlPath, params);
+			switch (route == null ? Route.Type.FILE : route.getType()) {
+			case PRIVATE:
+				if (directCall) {
+					sendError(ostream, INVALID_PATH);
+					return;
+				}
+				break;
+			case METRICS:
+				if (directCall) {
+					writeMetrics();
+					return;
+				}
+				break;
+			case EXTENSION:
+				writeEchoParams(urlPath.substring(urlPath.lastIndexOf("/") + 1), directCall);
 				return;
-			}
-			
-			if (workersMap.containsKey(urlPath)) {
-				workersMap.get(urlPath).processRequest(context);
+			case WORKER:
+				processWithWorker(route.getWorker(), directCall);
 				return;
+			default:
+				break;
 			}
 			
-			Path requestedFile = checkRequestedFile(urlPath);
+			FileInfo requestedFile = checkRequestedFile(urlPath);
 			if (requestedFile == null)
 				return;
 			
-			if (urlPath.endsWith(".smscr")) {
-				writeSmartScript(requestedFile);
+			if (trafficClass(route, urlPath) == TrafficClass.SCRIPT) {
+				writeSmartScript(requestedFile.getPath(), urlPath);
 			} else {
 				writeRegularFile(requestedFile);
 			}
@@ -528,28 +1238,84 @@ public class SmartHttpServer {
 		 * Method initializes context if it's not already.
 		 */
 		private void checkRequestContext() {
-			if (context == null) {
-				context = new RequestContext(ostream, params, permPrams, outputCookies, tempParams, this);
+			if (!contextReady) {
+				contextReady = true;
+				if (context == null) {
+					context = new RequestContext(ostream, params, permPrams, outputCookies, tempParams, this);
+				} else {
+					context.reset(ostream, permPrams);
+				}
+				context.setCancellationToken(cancellationToken);
+				if (csocket != null && csocket.getChannel() != null) {
+					context.setOutputChannel(csocket.getChannel());
+				}
+				if (gzipCompression != null && request != null) {
+					context.setCompression(gzipCompression,
+							GzipCompression.acceptsGzip(RequestParser.getHeader(request, "Accept-Encoding")),
+							"HTTP/1.1".equals(version));
+				}
+			}
+		}
+		
+		/**
+		 * Method writes server's metrics to client.
+		 * 
+		 * @throws IOException if writing fails
+		 */
+		private void writeMetrics() throws IOException {
+			context.setMimeType("text/plain");
+			// Stale metrics are useless, so no cache policy applies to them
+			context.addHeader("Cache-Control", "no-store");
+			context.write(metrics.format());
+		}
+		
+		/**
+		 * Method processes request with given worker. Asynchronous worker that serves
+		 * client's connection directly gets buffered context and server's thread doesn't
+		 * wait for it, in other cases (synchronous workers, dispatched requests and
+		 * in-process clients) processing is completed before method returns.
+		 * 
+		 * @param worker     worker that processes request
+		 * @param directCall flag that shows if it's direct call from client
+		 * @throws Exception if processing fails
+		 */
+		private void processWithWorker(AsyncWebWorker worker, boolean directCall) throws Exception {
+			boolean detachable = directCall && csocket != null
+					&& !(worker instanceof AsyncWebWorker.SyncWorkerAdapter);
+			if (detachable) {
+				context.enableBuffering();
+			}
+			CompletableFuture<Void> future = worker.processRequestAsync(context).toCompletableFuture();
+			if (detachable && !future.isDone()) {
+				pending = future;
+				return;
+			}
+			try {
+				future.join();
+			} catch (CompletionException ex) {
+				if (ex.getCause() instanceof Exception)
+					throw (Exception) ex.getCause();
+				throw ex;
 			}
 		}
 		
 		/**
 		 * Method processes echo parameters request.
 		 * 
-		 * @param className name of class that processes echo parameters request  
+		 * @param className  name of class that processes echo parameters request  
+		 * @param directCall flag that shows if it's direct call from client
 		 */
-		private void writeEchoParams(String className) {
+		private void writeEchoParams(String className, boolean directCall) {
 			String fqcn = getFQCNForWorker(className);
 			try {
 				Class<?> referenceToClass = this.getClass().getClassLoader().loadClass(fqcn);
 				@SuppressWarnings("deprecation")
 				Object newObject = referenceToClass.newInstance();
-				IWebWorker iww = (IWebWorker) newObject;
-				iww.processRequest(context);
+				processWithWorker(toAsyncWorker(newObject), directCall);
 			} catch (ClassNotFoundException ex) {
 				return;
 			} catch (Exception ex) {
-				ex.printStackTrace();
+				reportFailure(ex);
 			}
 		}
 		
@@ -566,252 +1332,265 @@ public class SmartHttpServer {
 		/**
 		 * Method writes request file to client.
 		 * 
-		 * @param requestedFile file requested by client
-		 * @throws IOException  if writing fails
+		 * @param info         metadata of file requested by client
+		 * @throws IOException if writing fails
 		 */
-		private void writeRegularFile(Path requestedFile) throws IOException {
-			setRequestContext(context, requestedFile);
-			byte[] data = Files.readAllBytes(requestedFile);
-			context.write(data);
+		private void writeRegularFile(FileInfo info) throws IOException {
+			// Cache policy of not modified response depends on mime type too
+			context.setMimeType(mimeType);
+			context.addHeader("ETag", info.getETag());
+			context.addHeader("Last-Modified", info.getLastModified());
+			if (isNotModified(info)) {
+				context.setStatusCode(304);
+				context.setStatusText("Not Modified");
+				context.write(new byte[0]);
+				return;
+			}
+			
+			FileInfo variant = getCompressedVariant(info.getPath(), info);
+			if (variant != null) {
+				context.addHeader("ETag", "W/" + info.getETag());
+				context.addHeader("Content-Encoding", "gzip");
+				writeWholeFile(variant);
+				return;
+			}
+			context.addHeader("Accept-Ranges", "bytes");
+			if (RequestParser.getHeader(request, "Range") == null) {
+				writeWholeFile(info);
+				return;
+			}
+			
+			try (FileInfoCache.OpenFile openFile = fileInfoCache.open(info)) {
+				FileChannel file = openFile.getChannel();
+				long length = info.getSize();
+				
+				List<ByteRange> ranges = getRequestedRanges(length, info);
+				if (ranges == null) {
+					setRequestContext(context, length);
+					context.write(file, 0, length);
+				} else if (ranges.isEmpty()) {
+					context.setStatusCode(416);
+					context.setStatusText("Range Not Satisfiable");
+					context.addHeader("Content-Range", "bytes */" + length);
+					context.setContentLength(0L);
+					context.write(new byte[0]);
+				} else if (ranges.size() == 1) {
+					ByteRange range = ranges.get(0);
+					context.setMimeType(mimeType);
+					context.setStatusCode(206);
+					context.setStatusText("Partial Content");
+					context.addHeader("Content-Range", range.toContentRange(length));
+					context.setContentLength(range.getLength());
+					context.write(file, range.getStart(), range.getLength());
+				} else {
+					writeMultipleRanges(file, length, ranges);
+				}
+			}
 		}
 		
 		/**
-		 * Method writes smart script to client.
+		 * Method writes whole file. Content of small file is taken from cache,
+		 * so it's written together with header.
 		 * 
-		 * @param requestedFile path of requested smart script file
-		 * @throws IOException  if writing fails
+		 * @param info         metadata of file
+		 * @throws IOException if writing file fails
 		 */
-		private void writeSmartScript(Path requestedFile) throws IOException {
-			byte[] data = Files.readAllBytes(requestedFile);
-			String smartScript = new String(data);
-			new SmartScriptEngine(new SmartScriptParser(smartScript).getDocumentNode(), context).execute();
+		private void writeWholeFile(FileInfo info) throws IOException {
+			ByteBuffer content = fileInfoCache.getContent(info);
+			if (content != null) {
+				setRequestContext(context, content.remaining());
+				context.write(content);
+				return;
+			}
+			try (FileInfoCache.OpenFile file = fileInfoCache.open(info)) {
+				setRequestContext(context, info.getSize());
+				context.write(file.getChannel(), 0, info.getSize());
+			}
 		}
 		
 		/**
-		 * Method sets request context.
+		 * Method returns compressed variant of requested file if client accepts it.
+		 * Range requests are always served from the file itself.
 		 * 
-		 * @param rc            request context that is set
 		 * @param requestedFile requested file
-		 * @throws IOException  if setting of context fails 
+		 * @param info          metadata of requested file
+		 * @return              metadata of compressed variant or {@code null} if it isn't used
+		 * @throws IOException  if building variant fails
 		 */
-		private void setRequestContext(RequestContext rc, Path requestedFile) throws IOException {
-			rc.setMimeType(mimeType);
-			rc.setStatusCode(200);
-			rc.setContentLength(Files.size(requestedFile));
+		private FileInfo getCompressedVariant(Path requestedFile, FileInfo info) throws IOException {
+			if (precompressedFiles == null || !GzipCompression.isCompressible(mimeType)
+					|| RequestParser.getHeader(request, "Range") != null
+					|| !GzipCompression.acceptsGzip(RequestParser.getHeader(request, "Accept-Encoding")))
+				return null;
+			return precompressedFiles.getVariant(requestedFile, info);
 		}
 		
 		/**
-		 * Method checks if requested file is valid. 
-		 * If it is it returns requested file's path.
-		 * If it's not, then it writes error message to client and returns {@code null}.
+		 * Method checks client's conditional headers and returns {@code true} if client's
+		 * cached copy of file is still valid. {@code If-None-Match} takes precedence
+		 * over {@code If-Modified-Since}.
 		 * 
-		 * @param urlPath      requested URL path
-		 * @return             requested file path or {@code null} if requested path is not valid
-		 * @throws IOException if writing to client fails
+		 * @param info metadata of requested file
+		 * @return     {@code true} if file hasn't been modified, otherwise {@code false}
 		 */
-		private Path checkRequestedFile(String urlPath) throws IOException {
-			Path requestedFile = documentRoot.resolve(urlPath.substring(1)).toAbsolutePath();
-			if (!requestedFile.startsWith(documentRoot)) {
-				sendError(ostream, 403, "Forbbiden");
-				return null;
-			}
+		private boolean isNotModified(FileInfo info) {
+			String ifNoneMatch = RequestParser.getHeader(request, "If-None-Match");
+			if (ifNoneMatch != null)
+				return EntityTag.matchesAny(ifNoneMatch, info.getETag());
 			
-			if (!Files.isReadable(requestedFile) || !Files.isRegularFile(requestedFile)) {
-				sendError(ostream, 404, "Requested file is not valid");
-				return null;
-			}
-			return requestedFile;
+			String ifModifiedSince = RequestParser.getHeader(request, "If-Modified-Since");
+			if (ifModifiedSince == null)
+				return false;
+			long since = HttpDate.parse(ifModifiedSince);
+			return since >= 0 && info.getLastModifiedMillis() / 1000 <= since / 1000;
 		}
 		
 		/**
-		 * Method parses client's parameters from given {@code paramString}.
+		 * Method returns byte ranges requested by client's {@code Range} header.
+		 * Ranges are ignored if {@code If-Range} header doesn't match file's
+		 * entity tag or last modification date.
 		 * 
-		 * @param paramString client's request parameters
+		 * @param length length of requested file
+		 * @param info   metadata of requested file
+		 * @return       list of satisfiable ranges, empty list if there are none
+		 *               or {@code null} if whole file must be sent
 		 */
-		private void parseParameters(String paramString) {
-			if (paramString.isEmpty()) 
-				return;
-			
-			String[] pairs = paramString.split("&");
-			for (String pair : pairs) {
-				String[] pairParts = pair.split("=");
-				try {
-					params.put(pairParts[0], pairParts[1]);
-				} catch (ArrayIndexOutOfBoundsException ex) {
-					return;
-				}
+		private List<ByteRange> getRequestedRanges(long length, FileInfo info) {
+			String range = RequestParser.getHeader(request, "Range");
+			if (range == null)
+				return null;
+			String ifRange = RequestParser.getHeader(request, "If-Range");
+			if (ifRange != null) {
+				boolean matches = EntityTag.isEntityTag(ifRange)
+						? EntityTag.strongMatches(ifRange, info.getETag())
+						: ifRange.trim().equals(info.getLastModified());
+				if (!matches)
+					return null;
 			}
+			return ByteRange.parse(range, length);
 		}
 		
 		/**
-		 * Method returns mime type of requested URL path.
+		 * Method writes given {@code ranges} of file as {@code multipart/byteranges} response.
 		 * 
-		 * @param urlPath requested URL path
+		 * @param file         requested file
+		 * @param length       length of requested file
+		 * @param ranges       requested ranges
+		 * @throws IOException if writing fails
 		 */
-		private void getMimeType(String urlPath) {
-			for (String type : mimeTypes.keySet()) {
-				if(urlPath.endsWith(type)) {
-					this.mimeType = mimeTypes.get(type);
-					return;
-				}
+		private void writeMultipleRanges(FileChannel file, long length, List<ByteRange> ranges) throws IOException {
+			String boundary = Long.toHexString(ThreadLocalRandom.current().nextLong());
+			List<byte[]> partHeaders = new ArrayList<>();
+			long contentLength = 0;
+			for (ByteRange range : ranges) {
+				byte[] partHeader = ("\r\n--" + boundary + "\r\n" +
+						"Content-Type: " + mimeType + "\r\n" +
+						"Content-Range: " + range.toContentRange(length) + "\r\n" +
+						"\r\n").getBytes(StandardCharsets.US_ASCII);
+				partHeaders.add(partHeader);
+				contentLength += partHeader.length + range.getLength();
+			}
+			byte[] end = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+			contentLength += end.length;
+			
+			context.setMimeType("multipart/byteranges; boundary=" + boundary);
+			context.setStatusCode(206);
+			context.setStatusText("Partial Content");
+			context.setContentLength(contentLength);
+			for (int i = 0; i < ranges.size(); i++) {
+				ByteRange range = ranges.get(i);
+				context.write(partHeaders.get(i));
+				context.write(file, range.getStart(), range.getLength());
 			}
-			this.mimeType = "application/octet-stream";
+			context.write(end);
 		}
 		
 		/**
-		 * Method parses client request and sets host if it's given.
+		 * Method writes smart script to client. If script exceeds its execution budget
+		 * before any of its output has been sent, client gets error response instead,
+		 * otherwise request is cancelled and connection is closed. Output is sent chunked
+		 * to HTTP/1.1 clients, so cut off response lacks terminating chunk.
 		 * 
-		 * @param request client request
-		 */
-		private void getHost(List<String> request) {
-			for (String header : request) {
-				if (header.contains("Host:")) {
-					int length = "Host:".length();
-					int index = header.indexOf("Host:");
-					host = header.substring(index + length).trim();
-					if (host.contains(":")) {
-						host = host.substring(0, host.indexOf(":")).trim();
-					}
-					return;
+		 * @param requestedFile path of requested smart script file
+		 * @param urlPath       requested URL path, which selects script's budget
+		 * @throws IOException  if writing fails
+		 */
+		private void writeSmartScript(Path requestedFile, String urlPath) throws IOException {
+			ScriptBudget budget = scriptBudgets.getOrDefault(urlPath, scriptBudget);
+			if ("HTTP/1.1".equals(version)) {
+				context.enableChunking();
+			}
+			try {
+				new SmartScriptEngine(scriptCache.get(requestedFile), context, budget).execute();
+			} catch (ScriptBudgetExceededException ex) {
+				metrics.increment(SCRIPTS_BUDGET_EXCEEDED);
+				if (context.discardResponse()) {
+					sendError(ostream, BUDGET_EXCEEDED);
+				} else {
+					// Part of response has been sent, so client can only be told by closing connection
+					context.getCancellationToken().cancel(ex.getMessage());
 				}
 			}
-			this.host = domainName;
 		}
 		
 		/**
-		 * Method reads client request from given input stream {@code istream}.
+		 * Method sets request context.
 		 * 
-		 * @param istream      clinet's input stream
-		 * @return             clinet's request list of lines
-		 * @throws IOException if reading client request fails
+		 * @param rc     request context that is set
+		 * @param length length of requested file
 		 */
-		private List<String> readRequest(PushbackInputStream istream) throws IOException {
-			String request = new String(getRequestByteArray(istream), StandardCharsets.US_ASCII);
-			List<String> headers = new ArrayList<String>();
-			
-			String currentLine = null;
-			for (String s : request.split("\n")) {
-				if (s.isEmpty())
-					break;
-				char c = s.charAt(0);
-				if (c == 9 || c == 32) {
-					currentLine += s;
-				} else {
-					if (currentLine != null) {
-						headers.add(currentLine);
-					}
-					currentLine = s;
-				}
-			}
-			if (!currentLine.isEmpty()) {
-				headers.add(currentLine);
-			}
-			return headers;
+		private void setRequestContext(RequestContext rc, long length) {
+			rc.setMimeType(mimeType);
+			rc.setStatusCode(200);
+			rc.setContentLength(length);
 		}
 		
 		/**
-		 * Method checks if client request is valid and returns its content in byte array.
+		 * Method checks if requested file is valid. 
+		 * If it is it returns requested file's metadata.
+		 * If it's not, then it writes error message to client and returns {@code null}.
 		 * 
-		 * @param istream      client input stream
-		 * @return             byte array that represents client's request
-		 * @throws IOException if reading client request fails
-		 */
-		private byte[] getRequestByteArray(PushbackInputStream istream) throws IOException {
-			ByteArrayOutputStream bos = new ByteArrayOutputStream();
-			int state = 0;
-			l: while (true) {
-				int b = istream.read();
-				if (b == -1)
-					return null;
-				if (b != 13) {
-					bos.write(b);
-				}
-				switch (state) {
-					case 0: 
-						if(b==13) { state=1; } else if(b==10) state=4;
-						break;
-					case 1: 
-						if(b==10) { state=2; } else state=0;
-						break;
-					case 2: 
-						if(b==13) { state=3; } else state=0;
-						break;
-					case 3: 
-						if(b==10) { break l; } else state=0;
-						break;
-					case 4: 
-						if(b==10) { break l; } else state=0;
-						break;
+		 * @param urlPath      requested URL path
+		 * @return             requested file's metadata or {@code null} if requested path is not valid
+		 * @throws IOException if writing to client fails
+		 */
+		private FileInfo checkRequestedFile(String urlPath) throws IOException {
+			if (negativeLookupCache != null && negativeLookupCache.isMissing(urlPath)) {
+				sendError(ostream, INVALID_FILE);
+				return null;
+			}
+			long generation = negativeLookupCache == null ? 0 : negativeLookupCache.getGeneration();
+			// Path is normalized first, so '..' segments can't lead outside of document root
+			Path requestedFile = documentRoot.resolve(urlPath.substring(1)).toAbsolutePath().normalize();
+			if (!requestedFile.startsWith(documentRoot)) {
+				sendError(ostream, FORBIDDEN);
+				return null;
+			}
+			
+			FileInfo info = fileInfoCache.find(requestedFile);
+			if (info == null) {
+				if (negativeLookupCache != null) {
+					negativeLookupCache.recordMissing(urlPath, generation);
 				}
+				sendError(ostream, INVALID_FILE);
+				return null;
 			}
-			return bos.toByteArray();
+			return info;
 		}
-
+		
 		/**
-		 * Method writes error to client output stream.
+		 * Method sends given precomputed error response to the client.
 		 * 
 		 * @param ostream      client's output stream
-		 * @param statusCode   status code
-		 * @param statusText   status text
-		 * @throws IOException if writing error to client fails
-		 */
-		private void sendError(OutputStream ostream, int statusCode, String statusText) throws IOException {
-			ostream.write(
-					("HTTP/1.1 " + statusCode + " " + statusText + "\r\n" +
-					"Server: simple java server\r\n" +
-					"Content-Type: text/plain;charset=UTF-8\r\n" +
-					"Content-Length: 0\r\n" +
-					"Connection: close\r\n" +
-					"\r\n").getBytes(StandardCharsets.US_ASCII)
-				);
+		 * @param response     error response without {@code Date} header and final empty line
+		 * @throws IOException if sending error fails
+		 */
+		private void sendError(OutputStream ostream, byte[] response) throws IOException {
+			ostream.write(response);
+			ostream.write(HeaderWriter.dateLine());
+			ostream.write(CRLF);
 			ostream.flush();
 		}
 	}
-	
-	/**
-	 * Method generates random SID value that contains 20 uppercased letters.
-	 * 
-	 * @return random SID value that contains 20 uppercased letters
-	 */
-	private String generateRandomSid() {
-		int leftLimit = 65; // 'A'
-	    int rightLimit = 90; // 'Z'
-	    int length = 20;
-		StringBuilder buffer = new StringBuilder(length);
-		for (int i = 0; i < length; i++) {
-			int value = leftLimit + (int) (this.sessionRandom.nextFloat() * (rightLimit - leftLimit + 1));
-			buffer.append((char) value);
-		}
-		return buffer.toString();
-	}
-	
-	/**
-	 * Class that stores info about session entry.
-	 * 
-	 * @author Ante Gazibaric
-	 * @version 1.0
-	 *
-	 */
-	private static class SessionMapEntry {
-		
-		/**
-		 * Session ID.
-		 */
-		@SuppressWarnings("unused")
-		String sid;
-		/**
-		 * Session's host.
-		 */
-		String host;
-		/**
-		 * Session's time until it's valid
-		 */
-		long validUntil;
-		/**
-		 * Session's map of parameters.
-		 */
-		Map<String, String> map;
-		
-	}
 
 }
@@ -0,0 +1,39 @@
+package hr.fer.zemris.java.webserver;
+
+/**
+ * Classes of server's traffic. Each class can be served by its own thread pool,
+ * so that burst of expensive requests of one class doesn't delay requests of other classes.
+ *
+ * @author Ante Gazibaric
+ * @version 1.0
+ *
+ */
+public enum TrafficClass {
+
+	/**
+	 * Requests of static files.
+	 */
+	STATIC,
+	/**
+	 * Requests of smart scripts.
+	 */
+	SCRIPT,
+	/**
+	 * Requests served by web workers.
+	 */
+	WORKER,
+	/**
+	 * Requests of server's own pages, such as metrics.
+	 */
+	INTERNAL;
+
+	/**
+	 * Method returns name of class used in configuration and metrics.
+	 *
+	 * @return name of class
+	 */
+	public String configName() {
+		return name().toLowerCase();
+	}
+
+}
@@ -0,0 +1,242 @@
+package hr.fer.zemris.java.webserver;
+
+/**
+ * Streaming implementation of xxHash64, fast non-cryptographic hash function.
+ * Data can be given in any number of {@link #update(byte[], int, int)} calls
+ * and result is the same as if it was hashed at once.
+ *
+ * @author Ante Gazibaric
+ * @version 1.0
+ *
+ */
+public class XxHash64 {
+
+	/**
+	 * First prime.
+	 */
+	private static final long P1 = 0x9E3779B185EBCA87L;
+	/**
+	 * Second prime.
+	 */
+	private static final long P2 = 0xC2B2AE3D27D4EB4FL;
+	/**
+	 * Third prime.
+	 */
+	private static final long P3 = 0x165667B19E3779F9L;
+	/**
+	 * Fourth prime.
+	 */
+	private static final long P4 = 0x85EBCA77C2B2AE63L;
+	/**
+	 * Fifth prime.
+	 */
+	private static final long P5 = 0x27D4EB2F165667C5L;
+
+	/**
+	 * Hash seed.
+	 */
+	private long seed;
+	/**
+	 * First accumulator.
+	 */
+	private long v1;
+	/**
+	 * Second accumulator.
+	 */
+	private long v2;
+	/**
+	 * Third accumulator.
+	 */
+	private long v3;
+	/**
+	 * Fourth accumulator.
+	 */
+	private long v4;
+	/**
+	 * Buffer of bytes that don't yet form whole 32 byte stripe.
+	 */
+	private byte[] buffer = new byte[32];
+	/**
+	 * Number of bytes in buffer.
+	 */
+	private int buffered;
+	/**
+	 * Total number of hashed bytes.
+	 */
+	private long totalLength;
+
+	/**
+	 * Constructor that creates new {@link XxHash64} object with seed 0.
+	 */
+	public XxHash64() {
+		this(0);
+	}
+
+	/**
+	 * Constructor that creates new {@link XxHash64} object.
+	 *
+	 * @param seed {@link #seed}
+	 */
+	public XxHash64(long seed) {
+		this.seed = seed;
+		reset();
+	}
+
+	/**
+	 * Method resets hash to its initial state.
+	 */
+	public void reset() {
+		v1 = seed + P1 + P2;
+		v2 = seed + P2;
+		v3 = seed;
+		v4 = seed - P1;
+		buffered = 0;
+		totalLength = 0;
+	}
+
+	/**
+	 * Method adds given bytes to the hash.
+	 *
+	 * @param data   array that contains bytes
+	 * @param offset position of first byte
+	 * @param length number of bytes
+	 */
+	public void update(byte[] data, int offset, int length) {
+		totalLength += length;
+		int end = offset + length;
+
+		if (buffered + length < 32) {
+			System.arraycopy(data, offset, buffer, buffered, length);
+			buffered += length;
+			return;
+		}
+
+		if (buffered > 0) {
+			int fill = 32 - buffered;
+			System.arraycopy(data, offset, buffer, buffered, fill);
+			processStripe(buffer, 0);
+			offset += fill;
+			buffered = 0;
+		}
+
+		while (offset + 32 <= end) {
+			processStripe(data, offset);
+			offset += 32;
+		}
+
+		buffered = end - offset;
+		System.arraycopy(data, offset, buffer, 0, buffered);
+	}
+
+	/**
+	 * Method returns hash of all bytes added so far.
+	 *
+	 * @return 64-bit hash
+	 */
+	public long getValue() {
+		long h;
+		if (totalLength >= 32) {
+			h = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+			h = mergeRound(h, v1);
+			h = mergeRound(h, v2);
+			h = mergeRound(h, v3);
+			h = mergeRound(h, v4);
+		} else {
+			h = seed + P5;
+		}
+		h += totalLength;
+
+		int i = 0;
+		for (; i + 8 <= buffered; i += 8) {
+			h ^= round(0, readLong(buffer, i));
+			h = Long.rotateLeft(h, 27) * P1 + P4;
+		}
+		if (i + 4 <= buffered) {
+			h ^= (readInt(buffer, i) & 0xFFFFFFFFL) * P1;
+			h = Long.rotateLeft(h, 23) * P2 + P3;
+			i += 4;
+		}
+		for (; i < buffered; i++) {
+			h ^= (buffer[i] & 0xFF) * P5;
+			h = Long.rotateLeft(h, 11) * P1;
+		}
+
+		h ^= h >>> 33;
+		h *= P2;
+		h ^= h >>> 29;
+		h *= P3;
+		h ^= h >>> 32;
+		return h;
+	}
+
+	/**
+	 * Method processes one 32 byte stripe.
+	 *
+	 * @param data   array that contains stripe
+	 * @param offset position of stripe
+	 */
+	private void processStripe(byte[] data, int offset) {
+		v1 = round(v1, readLong(data, offset));
+		v2 = round(v2, readLong(data, offset + 8));
+		v3 = round(v3, readLong(data, offset + 16));
+		v4 = round(v4, readLong(data, offset + 24));
+	}
+
+	/**
+	 * Method performs one round of accumulation.
+	 *
+	 * @param acc   accumulator
+	 * @param input input lane
+	 * @return      new accumulator value
+	 */
+	private static long round(long acc, long input) {
+		acc += input * P2;
+		acc = Long.rotateLeft(acc, 31);
+		return acc * P1;
+	}
+
+	/**
+	 * Method merges accumulator into hash.
+	 *
+	 * @param h   hash
+	 * @param acc accumulator
+	 * @return    new hash value
+	 */
+	private static long mergeRound(long h, long acc) {
+		h ^= round(0, acc);
+		return h * P1 + P4;
+	}
+
+	/**
+	 * Method reads little-endian long.
+	 *
+	 * @param data   array
+	 * @param offset position of first byte
+	 * @return       read value
+	 */
+	private static long readLong(byte[] data, int offset) {
+		return (data[offset] & 0xFFL)
+				| (data[offset + 1] & 0xFFL) << 8
+				| (data[offset + 2] & 0xFFL) << 16
+				| (data[offset + 3] & 0xFFL) << 24
+				| (data[offset + 4] & 0xFFL) << 32
+				| (data[offset + 5] & 0xFFL) << 40
+				| (data[offset + 6] & 0xFFL) << 48
+				| (data[offset + 7] & 0xFFL) << 56;
+	}
+
+	/**
+	 * Method reads little-endian int.
+	 *
+	 * @param data   array
+	 * @param offset position of first byte
+	 * @return       read value
+	 */
+	private static int readInt(byte[] data, int offset) {
+		return (data[offset] & 0xFF)
+				| (data[offset + 1] & 0xFF) << 8
+				| (data[offset + 2] & 0xFF) << 16
+				| (data[offset + 3] & 0xFF) << 24;
+	}
+
+}
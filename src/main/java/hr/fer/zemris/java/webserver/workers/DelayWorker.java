@@ -0,0 +1,63 @@
+package hr.fer.zemris.java.webserver.workers;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+
+import hr.fer.zemris.java.webserver.AsyncWebWorker;
+import hr.fer.zemris.java.webserver.RequestContext;
+
+/**
+ * Asynchronous server worker that answers after delay given in milliseconds
+ * by {@code ms} parameter, without holding server's thread while it waits.
+ * It simulates worker that waits for slow backend.
+ *
+ * @author Ante Gazibaric
+ * @version 1.0
+ *
+ */
+public class DelayWorker implements AsyncWebWorker {
+
+	/**
+	 * Name of parameter with delay in milliseconds.
+	 */
+	private static final String DELAY = "ms";
+	/**
+	 * Delay in milliseconds used when parameter isn't valid.
+	 */
+	private static final long DEFAULT_DELAY = 100;
+	/**
+	 * Maximum delay in milliseconds.
+	 */
+	private static final long MAX_DELAY = 10_000;
+
+	@Override
+	public CompletionStage<Void> processRequestAsync(RequestContext context) {
+		long delay = getDelay(context.getParameter(DELAY));
+		return CompletableFuture.runAsync(() -> {
+			try {
+				context.setMimeType("text/plain");
+				context.write("Answered after " + delay + " ms");
+			} catch (IOException ex) {
+				throw new UncheckedIOException(ex);
+			}
+		}, CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS));
+	}
+
+	/**
+	 * Method returns delay from given parameter value.
+	 *
+	 * @param value value of delay parameter, can be {@code null}
+	 * @return      delay in milliseconds between 0 and {@link #MAX_DELAY}
+	 */
+	private static long getDelay(String value) {
+		try {
+			return Math.max(0, Math.min(MAX_DELAY, Long.parseLong(value)));
+		} catch (NumberFormatException ex) {
+			return DEFAULT_DELAY;
+		}
+	}
+
+}
@@ -0,0 +1,88 @@
+package hr.fer.zemris.java.webserver;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import hr.fer.zemris.java.webserver.workers.DelayWorker;
+
+/**
+ * Tests of asynchronous workers served over sockets, where worker is detached
+ * from server's thread and response is completed when its stage completes.
+ * Uses {@link DelayWorker} on {@code /delay} and request deadline of 500 ms.
+ *
+ * @author Ante Gazibaric
+ * @version 1.0
+ *
+ */
+public class AsyncWorkerTest {
+
+	/**
+	 * Server that is tested.
+	 */
+	private static SmartHttpServer server;
+	/**
+	 * Port of the server.
+	 */
+	private static int port;
+
+	@BeforeClass
+	public static void startServer() throws Exception {
+		port = TestServers.freePort();
+		Map<String, String> overrides = new HashMap<>();
+		overrides.put(ServerPropertiesKeys.ADDRESS, TestServers.ADDRESS);
+		overrides.put(ServerPropertiesKeys.PORT, String.valueOf(port));
+		overrides.put(ServerPropertiesKeys.REQUEST_TIMEOUT, "500");
+		server = TestServers.create(overrides);
+		server.start();
+		TestServers.await(port);
+	}
+
+	@AfterClass
+	public static void stopServer() {
+		server.stop();
+	}
+
+	@Test
+	public void responseIsSentWhenWorkerCompletes() throws Exception {
+		String response = TestServers.get(port, "/delay?ms=50");
+
+		assertTrue(response, response.startsWith("HTTP/1.1 200"));
+		assertTrue(response, response.endsWith("Answered after 50 ms"));
+	}
+
+	@Test
+	public void detachedWorkersDontBlockEachOther() throws Exception {
+		CompletableFuture<?>[] responses = new CompletableFuture<?>[8];
+		for (int i = 0; i < responses.length; i++) {
+			responses[i] = CompletableFuture.supplyAsync(() -> {
+				try {
+					return TestServers.get(port, "/delay?ms=200");
+				} catch (Exception ex) {
+					throw new RuntimeException(ex);
+				}
+			});
+		}
+		for (CompletableFuture<?> response : responses) {
+			String text = (String) response.get();
+			assertTrue(text, text.startsWith("HTTP/1.1 200"));
+		}
+	}
+
+	@Test
+	public void workerThatMissesDeadlineGetsErrorResponse() throws Exception {
+		long start = System.nanoTime();
+		String response = TestServers.get(port, "/delay?ms=3000");
+		long elapsed = (System.nanoTime() - start) / 1_000_000;
+
+		assertTrue(response, response.startsWith("HTTP/1.1 504"));
+		assertTrue("Response took " + elapsed + " ms", elapsed < 2500);
+	}
+
+}
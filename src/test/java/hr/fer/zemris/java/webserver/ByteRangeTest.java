@@ -0,0 +1,103 @@
+package hr.fer.zemris.java.webserver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests of {@link ByteRange}.
+ *
+ * @author Ante Gazibaric
+ * @version 1.0
+ *
+ */
+public class ByteRangeTest {
+
+	@Test
+	public void closedRange() {
+		assertRanges(ByteRange.parse("bytes=0-99", 3000), 0, 99);
+	}
+
+	@Test
+	public void closedRangeIsCutAtEndOfFile() {
+		assertRanges(ByteRange.parse("bytes=2900-5000", 3000), 2900, 2999);
+	}
+
+	@Test
+	public void suffixRange() {
+		assertRanges(ByteRange.parse("bytes=-500", 3000), 2500, 2999);
+	}
+
+	@Test
+	public void suffixLongerThanFile() {
+		assertRanges(ByteRange.parse("bytes=-5000", 3000), 0, 2999);
+	}
+
+	@Test
+	public void openEndedRange() {
+		assertRanges(ByteRange.parse("bytes=1000-", 3000), 1000, 2999);
+	}
+
+	@Test
+	public void openEndedRangePastEndOfFileIsUnsatisfiable() {
+		assertTrue(ByteRange.parse("bytes=5000-", 3000).isEmpty());
+		assertTrue(ByteRange.parse("bytes=3000-", 3000).isEmpty());
+	}
+
+	@Test
+	public void closedRangePastEndOfFileIsUnsatisfiable() {
+		assertTrue(ByteRange.parse("bytes=5000-6000", 3000).isEmpty());
+	}
+
+	@Test
+	public void unsatisfiableRangeIsSkipped() {
+		assertRanges(ByteRange.parse("bytes=5000-, 0-9", 3000), 0, 9);
+	}
+
+	@Test
+	public void overlappingRangesAreMerged() {
+		assertRanges(ByteRange.parse("bytes=50-99, 0-59, 200-299", 3000), 0, 99, 200, 299);
+	}
+
+	@Test
+	public void adjacentRangesAreMerged() {
+		assertRanges(ByteRange.parse("bytes=10-19,0-9", 3000), 0, 19);
+	}
+
+	@Test
+	public void malformedSpecsAreIgnored() {
+		assertNull(ByteRange.parse("items=0-9", 3000));
+		assertNull(ByteRange.parse("bytes=9", 3000));
+		assertNull(ByteRange.parse("bytes=a-9", 3000));
+		assertNull(ByteRange.parse("bytes=9-0", 3000));
+		assertNull(ByteRange.parse("bytes=0-9,x", 3000));
+	}
+
+	@Test
+	public void tooManyRangesAreIgnored() {
+		StringBuilder sb = new StringBuilder("bytes=0-0");
+		for (int i = 1; i <= ByteRange.MAX_RANGES; i++) {
+			sb.append(',').append(i * 2).append('-').append(i * 2);
+		}
+		assertNull(ByteRange.parse(sb.toString(), 3000));
+	}
+
+	/**
+	 * Method checks that given ranges have given starts and ends.
+	 *
+	 * @param ranges    parsed ranges
+	 * @param positions start and end of each range
+	 */
+	private static void assertRanges(List<ByteRange> ranges, long... positions) {
+		assertEquals(positions.length / 2, ranges.size());
+		for (int i = 0; i < ranges.size(); i++) {
+			assertEquals(positions[2 * i], ranges.get(i).getStart());
+			assertEquals(positions[2 * i + 1], ranges.get(i).getEnd());
+		}
+	}
+
+}
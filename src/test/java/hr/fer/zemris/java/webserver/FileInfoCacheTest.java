@@ -0,0 +1,123 @@
+package hr.fer.zemris.java.webserver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests of {@link FileInfoCache} and limit of content it keeps in memory.
+ *
+ * @author Ante Gazibaric
+ * @version 1.0
+ *
+ */
+public class FileInfoCacheTest {
+
+	/**
+	 * Directory with test files.
+	 */
+	private Path directory;
+
+	@Before
+	public void createDirectory() throws IOException {
+		directory = Files.createTempDirectory("files");
+	}
+
+	@After
+	public void deleteDirectory() throws IOException {
+		try (Stream<Path> files = Files.list(directory)) {
+			for (Path file : (Iterable<Path>) files::iterator) {
+				Files.delete(file);
+			}
+		}
+		Files.delete(directory);
+	}
+
+	@Test
+	public void contentIsCachedUpToLimit() throws IOException {
+		FileInfoCache cache = new FileInfoCache(60_000, 0, 2500);
+		FileInfo a = cache.get(file("a", 1000));
+		FileInfo b = cache.get(file("b", 1000));
+
+		assertNotNull(cache.getContent(a));
+		assertNotNull(cache.getContent(b));
+		assertEquals(2000, cache.getContentBytes());
+		assertNotNull(a.getContent());
+		assertNotNull(b.getContent());
+	}
+
+	@Test
+	public void leastRecentlyUsedContentIsEvicted() throws IOException {
+		FileInfoCache cache = new FileInfoCache(60_000, 0, 2500);
+		FileInfo a = cache.get(file("a", 1000));
+		FileInfo b = cache.get(file("b", 1000));
+		FileInfo c = cache.get(file("c", 1000));
+		cache.getContent(a);
+		cache.getContent(b);
+		cache.getContent(a);
+		cache.getContent(c);
+
+		assertEquals(2000, cache.getContentBytes());
+		assertNotNull(a.getContent());
+		assertNull(b.getContent());
+		assertNotNull(c.getContent());
+		// Metadata stays cached when its content is evicted
+		assertSame(b, cache.get(b.getPath()));
+	}
+
+	@Test
+	public void evictedContentIsReadAgain() throws IOException {
+		FileInfoCache cache = new FileInfoCache(60_000, 0, 1500);
+		FileInfo a = cache.get(file("a", 1000));
+		FileInfo b = cache.get(file("b", 1000));
+		cache.getContent(a);
+		cache.getContent(b);
+
+		assertNull(a.getContent());
+		assertEquals(1000, cache.getContent(a).remaining());
+		assertEquals(1000, cache.getContentBytes());
+	}
+
+	@Test
+	public void invalidatedContentIsReleased() throws IOException {
+		FileInfoCache cache = new FileInfoCache(60_000, 0, 2500);
+		FileInfo a = cache.get(file("a", 1000));
+		cache.getContent(a);
+		cache.invalidate(a.getPath());
+
+		assertEquals(0, cache.getContentBytes());
+		assertNull(a.getContent());
+	}
+
+	@Test
+	public void contentIsntCachedWithoutLimit() throws IOException {
+		FileInfoCache cache = new FileInfoCache(60_000, 0, 0);
+		FileInfo a = cache.get(file("a", 10));
+
+		assertNull(cache.getContent(a));
+		assertEquals(0, cache.getContentBytes());
+	}
+
+	/**
+	 * Method creates file of given size in test directory.
+	 *
+	 * @param name         name of file
+	 * @param size         size of file in bytes
+	 * @return             path of file
+	 * @throws IOException if file can't be written
+	 */
+	private Path file(String name, int size) throws IOException {
+		return Files.write(directory.resolve(name), new byte[size]);
+	}
+
+}
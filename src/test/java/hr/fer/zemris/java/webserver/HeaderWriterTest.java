@@ -0,0 +1,44 @@
+package hr.fer.zemris.java.webserver;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+/**
+ * Tests of {@link HeaderWriter}.
+ *
+ * @author Ante Gazibaric
+ * @version 1.0
+ *
+ */
+public class HeaderWriterTest {
+
+	@Test
+	public void asciiHeaderValue() {
+		HeaderWriter writer = new HeaderWriter().header("X-Name", "Ivan");
+
+		assertEquals("X-Name: Ivan\r\n", new String(writer.toByteArray(), StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void nonAsciiHeaderValueIsEncodedAsUtf8() {
+		HeaderWriter writer = new HeaderWriter()
+				.header("X-First", "ok")
+				.header("X-Name", "Ivan Čeh");
+
+		assertEquals("X-First: ok\r\nX-Name: Ivan Čeh\r\n",
+				new String(writer.toByteArray(), StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void textAfterNonAsciiValueIsKept() {
+		HeaderWriter writer = new HeaderWriter(4)
+				.writeText("Čeh")
+				.writeText(" ok");
+
+		assertEquals("Čeh ok", new String(writer.toByteArray(), StandardCharsets.UTF_8));
+	}
+
+}
@@ -0,0 +1,221 @@
+package hr.fer.zemris.java.webserver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import hr.fer.zemris.java.webserver.LoopbackConnector.ResponseBuffer;
+
+/**
+ * Tests of whole request pipeline of {@link SmartHttpServer}, driven through
+ * {@link LoopbackConnector} without opening sockets. Server uses configuration
+ * and files from project root.
+ *
+ * @author Ante Gazibaric
+ * @version 1.0
+ *
+ */
+public class LoopbackConnectorTest {
+
+	/**
+	 * Connector to server with configuration from {@code ./config}.
+	 */
+	private static LoopbackConnector connector;
+
+	@BeforeClass
+	public static void createServer() throws IOException {
+		connector = new LoopbackConnector(TestServers.create(new HashMap<>()));
+	}
+
+	@Test
+	public void staticFile() {
+		ResponseBuffer response = connector.get("/sample.txt");
+
+		assertEquals(200, response.getStatusCode());
+		assertEquals("11", header(response, "Content-Length"));
+		assertEquals("bytes", header(response, "Accept-Ranges"));
+		assertEquals(11, response.getBody(StandardCharsets.UTF_8).length());
+	}
+
+	@Test
+	public void rangeRequest() {
+		ResponseBuffer response = request("/sample.txt", "Range: bytes=0-3");
+
+		assertEquals(206, response.getStatusCode());
+		assertEquals("bytes 0-3/11", header(response, "Content-Range"));
+		assertEquals("4", header(response, "Content-Length"));
+		assertEquals(4, response.getBody(StandardCharsets.UTF_8).length());
+	}
+
+	@Test
+	public void rangePastEndOfFileIsUnsatisfiable() {
+		ResponseBuffer response = request("/sample.txt", "Range: bytes=50-");
+
+		assertEquals(416, response.getStatusCode());
+		assertEquals("bytes */11", header(response, "Content-Range"));
+		assertEquals("", response.getBody(StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void conditionalGetWithCurrentETag() {
+		String etag = header(connector.get("/sample.txt"), "ETag");
+		ResponseBuffer response = request("/sample.txt", "If-None-Match: " + etag);
+
+		assertEquals(304, response.getStatusCode());
+		assertEquals(etag, header(response, "ETag"));
+		assertEquals("", response.getBody(StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void conditionalGetWithOldETag() {
+		ResponseBuffer response = request("/sample.txt", "If-None-Match: \"0-0\"");
+
+		assertEquals(200, response.getStatusCode());
+	}
+
+	@Test
+	public void cachePolicyIsSentWith304() {
+		ResponseBuffer full = connector.get("/fruits.png");
+		String cacheControl = header(full, "Cache-Control");
+		assertTrue(cacheControl, cacheControl.endsWith("max-age=86400"));
+
+		ResponseBuffer response = request("/fruits.png", "If-None-Match: " + header(full, "ETag"));
+
+		assertEquals(304, response.getStatusCode());
+		assertEquals(cacheControl, header(response, "Cache-Control"));
+	}
+
+	@Test
+	public void dynamicResponseIsCompressedWhenAccepted() throws IOException {
+		ResponseBuffer response = request("/index2.html", "Accept-Encoding: gzip");
+
+		assertEquals(200, response.getStatusCode());
+		assertEquals("gzip", header(response, "Content-Encoding"));
+		assertEquals("Accept-Encoding", header(response, "Vary"));
+		assertEquals("chunked", header(response, "Transfer-Encoding"));
+		// Connector reuses its buffer, so body is decoded before next exchange
+		String body = gunzip(dechunk(response));
+		String plain = new String(dechunk(connector.get("/index2.html")), StandardCharsets.UTF_8);
+		assertEquals(plain, body);
+	}
+
+	@Test
+	public void responseIsntCompressedWithoutAcceptEncoding() {
+		ResponseBuffer response = connector.get("/index2.html");
+
+		assertEquals(200, response.getStatusCode());
+		assertNull(header(response, "Content-Encoding"));
+		assertEquals("Accept-Encoding", header(response, "Vary"));
+	}
+
+	@Test
+	public void scriptWithinBudget() {
+		ResponseBuffer response = connector.get("/scripts/fibonacci.smscr");
+
+		assertEquals(200, response.getStatusCode());
+		assertTrue(response.getBody(StandardCharsets.UTF_8).contains("\r\n21\r\n34\r\n"));
+	}
+
+	@Test
+	public void scriptOverBudgetGetsErrorResponse() throws IOException {
+		Map<String, String> overrides = new HashMap<>();
+		overrides.put(ServerPropertiesKeys.SCRIPT_BUDGETS, "");
+		overrides.put(ServerPropertiesKeys.SCRIPT_MAX_ITERATIONS, "3");
+		LoopbackConnector limited = new LoopbackConnector(TestServers.create(overrides));
+
+		ResponseBuffer response = limited.get("/scripts/fibonacci.smscr");
+
+		assertEquals(500, response.getStatusCode());
+		assertEquals("", response.getBody(StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void privateRouteIsRejected() {
+		assertEquals(404, connector.get("/private/home.smscr").getStatusCode());
+		assertEquals(404, connector.get("/./private/home.smscr").getStatusCode());
+		assertEquals(404, connector.get("/scripts/../private/home.smscr").getStatusCode());
+		assertEquals(404, connector.get("//private/home.smscr").getStatusCode());
+	}
+
+	@Test
+	public void pathOutsideRootIsRejected() {
+		assertEquals(400, connector.get("/../pom.xml").getStatusCode());
+	}
+
+	/**
+	 * Method sends GET request for given path with given additional header.
+	 *
+	 * @param urlPath requested path
+	 * @param header  header line without line terminator
+	 * @return        response
+	 */
+	private static ResponseBuffer request(String urlPath, String header) {
+		return connector.exchange("GET " + urlPath + " HTTP/1.1\r\nHost: localhost\r\n" + header + "\r\n\r\n");
+	}
+
+	/**
+	 * Method returns value of first header with given name in response.
+	 *
+	 * @param response response
+	 * @param name     name of header
+	 * @return         value of header or {@code null} if response doesn't have it
+	 */
+	private static String header(ResponseBuffer response, String name) {
+		String text = new String(response.array(), 0, response.size(), StandardCharsets.ISO_8859_1);
+		String head = text.substring(0, text.indexOf("\r\n\r\n"));
+		for (String line : head.split("\r\n")) {
+			int colon = line.indexOf(':');
+			if (colon > 0 && line.substring(0, colon).equalsIgnoreCase(name))
+				return line.substring(colon + 1).trim();
+		}
+		return null;
+	}
+
+	/**
+	 * Method decodes chunked body of given response.
+	 *
+	 * @param response response with chunked body
+	 * @return         decoded body
+	 */
+	private static byte[] dechunk(ResponseBuffer response) {
+		byte[] bytes = response.toByteArray();
+		int position = new String(bytes, StandardCharsets.ISO_8859_1).indexOf("\r\n\r\n") + 4;
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		while (true) {
+			int lineEnd = position;
+			while (bytes[lineEnd] != '\r') {
+				lineEnd++;
+			}
+			int size = Integer.parseInt(new String(bytes, position, lineEnd - position, StandardCharsets.US_ASCII), 16);
+			if (size == 0)
+				return body.toByteArray();
+			body.write(bytes, lineEnd + 2, size);
+			position = lineEnd + 2 + size + 2;
+		}
+	}
+
+	/**
+	 * Method decompresses given gzip data.
+	 *
+	 * @param data         compressed data
+	 * @return             decompressed data decoded as UTF-8
+	 * @throws IOException if data isn't valid gzip
+	 */
+	private static String gunzip(byte[] data) throws IOException {
+		try (GZIPInputStream is = new GZIPInputStream(new ByteArrayInputStream(data))) {
+			return new String(is.readAllBytes(), StandardCharsets.UTF_8);
+		}
+	}
+
+}
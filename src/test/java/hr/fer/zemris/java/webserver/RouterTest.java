@@ -0,0 +1,124 @@
+package hr.fer.zemris.java.webserver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Tests of {@link Router} and normalization of paths it's given.
+ *
+ * @author Ante Gazibaric
+ * @version 1.0
+ *
+ */
+public class RouterTest {
+
+	@Test
+	public void exactRoute() {
+		Router router = new Router();
+		Route hello = route("/hello");
+		router.add("/hello", hello);
+
+		assertSame(hello, router.find("/hello", null));
+		assertNull(router.find("/hell", null));
+		assertNull(router.find("/hello/x", null));
+	}
+
+	@Test
+	public void parameterRoute() {
+		Router router = new Router();
+		Route posts = route("/users/{id}/posts");
+		router.add("/users/{id}/posts", posts);
+		Map<String, String> parameters = new HashMap<>();
+
+		assertSame(posts, router.find("/users/ana/posts", parameters));
+		assertEquals("ana", parameters.get("id"));
+		assertNull(router.find("/users//posts", null));
+	}
+
+	@Test
+	public void exactPartWinsOverParameter() {
+		Router router = new Router();
+		Route me = route("/users/me");
+		Route user = route("/users/{id}");
+		router.add("/users/{id}", user);
+		router.add("/users/me", me);
+
+		assertSame(me, router.find("/users/me", null));
+		assertSame(user, router.find("/users/mel", null));
+	}
+
+	@Test
+	public void parameterWinsOverPrefix() {
+		Router router = new Router();
+		Route prefix = route("/a/*");
+		Route parameter = route("/{x}/b");
+		router.add("/a/*", prefix);
+		router.add("/{x}/b", parameter);
+		Map<String, String> parameters = new HashMap<>();
+
+		assertSame(parameter, router.find("/a/b", parameters));
+		assertEquals("a", parameters.get("x"));
+		assertSame(prefix, router.find("/a/c", null));
+	}
+
+	@Test
+	public void longerPrefixWins() {
+		Router router = new Router();
+		Route ext = route("/ext/*");
+		Route extAdmin = route("/ext/admin/*");
+		router.add("/ext/*", ext);
+		router.add("/ext/admin/*", extAdmin);
+
+		assertSame(extAdmin, router.find("/ext/admin/x", null));
+		assertSame(ext, router.find("/ext/other", null));
+	}
+
+	@Test
+	public void privatePrefixMatchesNormalizedPath() {
+		Router router = new Router();
+		Route priv = route("/private*");
+		router.add("/private*", priv);
+
+		assertNull(router.find("/./private/home.smscr", null));
+		assertSame(priv, router.find(RequestParser.normalizePath("/./private/home.smscr"), null));
+		assertSame(priv, router.find(RequestParser.normalizePath("/scripts/../private/home.smscr"), null));
+		assertSame(priv, router.find(RequestParser.normalizePath("//private/home.smscr"), null));
+	}
+
+	@Test
+	public void normalizePath() {
+		assertEquals("/index.html", RequestParser.normalizePath("/index.html"));
+		assertEquals("/b", RequestParser.normalizePath("/a/../b"));
+		assertEquals("/a/b/", RequestParser.normalizePath("/a/./b/"));
+		assertEquals("/a", RequestParser.normalizePath("/a/."));
+		assertEquals("/", RequestParser.normalizePath("/a/.."));
+		assertEquals("/...", RequestParser.normalizePath("/..."));
+		assertNull(RequestParser.normalizePath("/../x"));
+		assertNull(RequestParser.normalizePath("/a/../../x"));
+		assertNull(RequestParser.normalizePath("index.html"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void duplicatePatternIsRejected() {
+		Router router = new Router();
+		router.add("/hello", route("/hello"));
+		router.add("/hello", route("/hello"));
+	}
+
+	/**
+	 * Method creates file route with given pattern.
+	 *
+	 * @param pattern pattern of route
+	 * @return        route
+	 */
+	private static Route route(String pattern) {
+		return new Route(pattern, Route.Type.FILE, TrafficClass.STATIC, null);
+	}
+
+}
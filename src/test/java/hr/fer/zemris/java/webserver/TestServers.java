@@ -0,0 +1,118 @@
+package hr.fer.zemris.java.webserver;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Helper methods for tests that run {@link SmartHttpServer}. Servers use
+ * configuration from {@code ./config}, with given properties replaced, so
+ * tests must run from project root.
+ *
+ * @author Ante Gazibaric
+ * @version 1.0
+ *
+ */
+final class TestServers {
+
+	/**
+	 * Address that test servers listen on.
+	 */
+	static final String ADDRESS = "127.0.0.1";
+
+	/**
+	 * Constructor is private, class contains only static methods.
+	 */
+	private TestServers() {
+	}
+
+	/**
+	 * Method creates server with configuration from {@code ./config/server.properties}
+	 * in which given properties are replaced.
+	 *
+	 * @param overrides    properties that replace configured ones
+	 * @return             created server, not started
+	 * @throws IOException if configuration can't be written
+	 */
+	static SmartHttpServer create(Map<String, String> overrides) throws IOException {
+		Properties properties = new Properties();
+		try (InputStream is = Files.newInputStream(Paths.get("config/server.properties"))) {
+			properties.load(is);
+		}
+		properties.putAll(overrides);
+		Path config = Files.createTempFile("server", ".properties");
+		config.toFile().deleteOnExit();
+		try (OutputStream os = Files.newOutputStream(config)) {
+			properties.store(os, null);
+		}
+		return new SmartHttpServer(config.toString());
+	}
+
+	/**
+	 * Method returns port that is currently free on loopback.
+	 *
+	 * @return             free port
+	 * @throws IOException if port can't be found
+	 */
+	static int freePort() throws IOException {
+		try (ServerSocket socket = new ServerSocket(0)) {
+			return socket.getLocalPort();
+		}
+	}
+
+	/**
+	 * Method waits until server accepts connections on given port.
+	 *
+	 * @param port         server's port
+	 * @throws IOException if server doesn't start in 10 seconds
+	 */
+	static void await(int port) throws IOException {
+		long deadline = System.currentTimeMillis() + 10_000;
+		while (true) {
+			try (Socket socket = new Socket()) {
+				socket.connect(new InetSocketAddress(ADDRESS, port), 1000);
+				return;
+			} catch (IOException ex) {
+				if (System.currentTimeMillis() > deadline)
+					throw ex;
+				try {
+					Thread.sleep(20);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw ex;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Method sends GET request for given path over new connection and returns
+	 * whole response, which server ends by closing connection.
+	 *
+	 * @param port         server's port
+	 * @param urlPath      requested path with optional parameters
+	 * @return             response decoded as UTF-8
+	 * @throws IOException if exchange fails
+	 */
+	static String get(int port, String urlPath) throws IOException {
+		try (Socket socket = new Socket(ADDRESS, port)) {
+			socket.setSoTimeout(10_000);
+			socket.getOutputStream().write(("GET " + urlPath + " HTTP/1.1\r\nHost: localhost\r\n\r\n")
+					.getBytes(StandardCharsets.US_ASCII));
+			ByteArrayOutputStream response = new ByteArrayOutputStream();
+			socket.getInputStream().transferTo(response);
+			return response.toString(StandardCharsets.UTF_8.name());
+		}
+	}
+
+}